@@ -19,6 +19,7 @@ import com.pi4j.io.gpio.digital.PullResistance;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -27,6 +28,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * From the terminal, in the `digital` directory, start this example with:
  * <code>jbang Button.java</code>
+ * <p>
+ * See <code>ButtonEventLatency.java</code> to handle the presses on your own thread and measure the latency.
  */
 
 // Connect a button to PIN 15 = BCM 22
@@ -52,19 +55,19 @@ void main() throws Exception {
 
     // Add a listener to the button
     var pressCounter = new AtomicInteger(0);
+    var tenPresses = new CountDownLatch(10);
     button.addListener(e -> {
         System.out.println("Button changed in listener to: " + e.state());
         if (e.state() == DigitalState.LOW) {
             // Each time the button changes to the low state, increment the counter
             var currentCount = pressCounter.incrementAndGet();
             System.out.println("Button was pressed for the " + currentCount + "th time");
+            tenPresses.countDown();
         }
     });
 
-    // Loop until the button has been pressed 10 times
-    while (pressCounter.get() < 10) {
-        Thread.sleep(10);
-    }
+    // Wait until the button has been pressed 10 times
+    tenPresses.await();
 
     // Shutdown the Pi4J context
     pi4j.shutdown();
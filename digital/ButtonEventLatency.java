@@ -0,0 +1,71 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/GpioEventRing.java
+//SOURCES helper/LatencyHistogram.java
+
+import helper.GpioEventRing;
+import helper.GpioLines;
+import helper.LatencyHistogram;
+
+/**
+ * Example code to handle button presses on a thread of your own, and measure how long it takes from the moment
+ * the button changes until the code that handles it runs.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * The button pin is requested with edge events and kernel debouncing, see {@link GpioLines}. A reader thread copies
+ * every event into a {@link GpioEventRing}, and the main thread handles them. Each event has two latencies:
+ * from the edge (timestamped by the kernel) to the moment Java read it, and to the moment the handler ran.
+ * No press gets lost when pressing fast, and if events do get dropped, they are counted.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with the number of presses to handle:
+ * <code>jbang ButtonEventLatency.java 20</code>
+ */
+
+// Connect a button to PIN 15 = BCM 22
+private static final int BCM_BUTTON = 22;
+private static final int DEBOUNCE_MICROS = 3000;
+
+private final LatencyHistogram readLatency = new LatencyHistogram();
+private final LatencyHistogram handlerLatency = new LatencyHistogram();
+private int pressCount = 0;
+
+void main(String[] args) {
+    int presses = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+    try (var button = new GpioLines(GpioLines.DEFAULT_CHIP, "button",
+            GpioLines.FLAG_INPUT | GpioLines.FLAG_EDGE_BOTH | GpioLines.FLAG_BIAS_PULL_DOWN,
+            DEBOUNCE_MICROS, 256, BCM_BUTTON);
+         var events = new GpioEventRing(button, 1024)) {
+        System.out.println("Button is initialized, press it " + presses + " times");
+
+        // Handle the events on this thread, the handler is called for each event in order
+        while (pressCount < presses) {
+            if (events.await(1_000_000_000L)) {
+                events.drain(this::handle);
+            }
+        }
+
+        System.out.println("Edge to read:    " + readLatency.summary());
+        System.out.println("Edge to handler: " + handlerLatency.summary());
+        System.out.println("Dropped events: " + events.getRingOverflows() + " in the ring, "
+                + events.getKernelOverflows() + " in the kernel");
+    }
+}
+
+private void handle(long kernelNanos, long readNanos, int offset, int edge, int lineSeqno) {
+    handlerLatency.record(System.nanoTime() - kernelNanos);
+    readLatency.record(readNanos - kernelNanos);
+    if (edge == GpioLines.EVENT_FALLING_EDGE) {
+        // Each time the button changes to the low state, increment the counter
+        pressCount++;
+        System.out.println("Button was pressed for the " + pressCount + "th time");
+    }
+}
@@ -19,6 +19,8 @@ import com.pi4j.io.gpio.digital.DigitalState;
 import com.pi4j.io.gpio.digital.PullResistance;
 import com.pi4j.util.Console;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Example code to blink a LED (DigitalOutput) and use a button (DigitalInput).
  * Make sure to follow the README of this project to learn more about JBang and how to install it.
@@ -37,7 +39,8 @@ private static final int BCM_BUTTON = 22;
 // Connect a LED to PIN 18 = BCM 24
 private static final int BCM_LED = 24;
 
-private static int pressCount = 0;
+// Incremented by the listener thread of Pi4J and read by the main thread
+private static final AtomicInteger pressCount = new AtomicInteger(0);
 
 void main() throws Exception {
     final var console = new Console();
@@ -61,12 +64,12 @@ void main() throws Exception {
     var button = pi4j.create(buttonConfig);
     button.addListener(e -> {
         if (e.state() == DigitalState.LOW) {
-            pressCount++;
-            console.println("Button was pressed for the " + pressCount + "th time");
+            var currentCount = pressCount.incrementAndGet();
+            console.println("Button was pressed for the " + currentCount + "th time");
         }
     });
 
-    while (pressCount < 5) {
+    while (pressCount.get() < 5) {
         if (led.equals(DigitalState.HIGH)) {
             console.println("LED low");
             led.low();
@@ -74,7 +77,7 @@ void main() throws Exception {
             console.println("LED high");
             led.high();
         }
-        Thread.sleep(500 / (pressCount + 1));
+        Thread.sleep(500 / (pressCount.get() + 1));
     }
 
     pi4j.shutdown();
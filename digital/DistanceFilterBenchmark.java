@@ -0,0 +1,134 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/DistanceFilter.java
+
+import helper.DistanceFilter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Benchmark of the {@link DistanceFilter} that is used by the distance sensor example.
+ * This doesn't need a Raspberry Pi, as it feeds a trace of readings through the filter.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with a trace recorded with
+ * <code>jbang DistanceSensor.java --record=trace.txt</code>, which has one distance in cm per line
+ * and -1 for a missing echo:
+ * <code>jbang DistanceFilterBenchmark.java trace.txt</code>
+ * <p>
+ * Without a trace, a synthetic one is generated: an object moving between 20 and 120cm, with noise,
+ * spikes and missing echoes. As the real distance is known, the error of the raw and filtered readings
+ * is also reported.
+ */
+
+private static final int SYNTHETIC_SAMPLES = 100_000;
+private static final int ROUNDS = 20;
+
+void main(String[] args) throws IOException {
+    double[] readings;
+    double[] truth = null;
+    if (args.length > 0) {
+        readings = loadTrace(Path.of(args[0]));
+        System.out.println("Loaded " + readings.length + " readings from " + args[0]);
+    } else {
+        truth = new double[SYNTHETIC_SAMPLES];
+        readings = createSyntheticTrace(truth, new Random(42));
+        System.out.println("Generated a synthetic trace of " + readings.length + " readings");
+    }
+
+    var filter = new DistanceFilter();
+    double[] filtered = new double[readings.length];
+
+    // The first rounds warm up the JIT compiler, only the best round is reported
+    long bestNanos = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+        filter.reset();
+        long start = System.nanoTime();
+        for (int i = 0; i < readings.length; i++) {
+            filtered[i] = filter.add(readings[i]);
+        }
+        bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+
+    System.out.printf("Filtered in %.1f ns per reading, %d of %d readings rejected%n",
+            bestNanos / (double) readings.length, filter.getRejected(), filter.getSamples());
+    System.out.printf("Step to step variation: raw %.2f cm, filtered %.2f cm%n",
+            variation(readings), variation(filtered));
+    if (truth != null) {
+        System.out.printf("RMS error against the real distance: raw %.2f cm, filtered %.2f cm%n",
+                rmsError(readings, truth), rmsError(filtered, truth));
+    }
+}
+
+/**
+ * Loads a trace with one reading per line, empty lines and lines starting with # are skipped.
+ */
+private static double[] loadTrace(Path path) throws IOException {
+    return Files.readAllLines(path).stream()
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .mapToDouble(Double::parseDouble)
+            .toArray();
+}
+
+/**
+ * Creates readings of an object that moves slowly back and forth, with 1cm of noise,
+ * 2% spikes of up to 100cm and 1% missing echoes.
+ *
+ * @param truth Filled with the real distance of every reading
+ */
+private static double[] createSyntheticTrace(double[] truth, Random random) {
+    double[] readings = new double[truth.length];
+    for (int i = 0; i < truth.length; i++) {
+        truth[i] = 70 + 50 * Math.sin(i / 200.0);
+        double chance = random.nextDouble();
+        if (chance < 0.01) {
+            readings[i] = -1;
+        } else if (chance < 0.03) {
+            readings[i] = truth[i] + random.nextDouble() * 200 - 100;
+        } else {
+            readings[i] = truth[i] + random.nextGaussian();
+        }
+    }
+    return readings;
+}
+
+/**
+ * Average absolute difference between valid successive readings
+ */
+private static double variation(double[] values) {
+    double sum = 0;
+    int count = 0;
+    for (int i = 1; i < values.length; i++) {
+        if (values[i] >= 0 && values[i - 1] >= 0) {
+            sum += Math.abs(values[i] - values[i - 1]);
+            count++;
+        }
+    }
+    return count > 0 ? sum / count : 0;
+}
+
+/**
+ * Root mean square error of the valid readings
+ */
+private static double rmsError(double[] values, double[] truth) {
+    double sum = 0;
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+        if (values[i] >= 0) {
+            double error = values[i] - truth[i];
+            sum += error * error;
+            count++;
+        }
+    }
+    return count > 0 ? Math.sqrt(sum / count) : 0;
+}
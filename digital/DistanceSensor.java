@@ -11,12 +11,21 @@
 //DEPS org.slf4j:slf4j-simple:2.0.17
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
+//SOURCES helper/GpioLines.java
+//SOURCES helper/DistanceFilter.java
 
 import com.pi4j.Pi4J;
 import com.pi4j.io.gpio.digital.DigitalInput;
 import com.pi4j.io.gpio.digital.DigitalOutput;
 import com.pi4j.io.gpio.digital.DigitalState;
 import com.pi4j.io.gpio.digital.PullResistance;
+import helper.DistanceFilter;
+import helper.GpioLines;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Example code to measure the distance of an object using a Ultrasonic sensor.
@@ -24,56 +33,169 @@ import com.pi4j.io.gpio.digital.PullResistance;
  * <p>
  * From the terminal, in the `digital` directory, start this example with:
  * <code>jbang DistanceSensor.java</code>
+ * <p>
+ * The echo pulse is measured with the edge events of the Linux GPIO character device, see {@link GpioLines}.
+ * The kernel timestamps the rising and falling edge in its interrupt handler, so the measurement doesn't depend
+ * on how fast Java polls the pin, and the program sleeps while waiting. A missing echo is reported after a timeout
+ * instead of blocking forever. The interval between measurements and the timeout can be changed in milliseconds:
+ * <code>jbang DistanceSensor.java --interval=60 --timeout=30</code>
+ * <p>
+ * Every reading is passed through a {@link DistanceFilter}, which rejects outliers and smooths the readings.
+ * The raw readings can be recorded to a file, to tune the filter with <code>DistanceFilterBenchmark.java</code>:
+ * <code>jbang DistanceSensor.java --record=trace.txt</code>
+ * <p>
+ * To compare with the original approach, which busy-waits on the echo pin with Pi4J, use:
+ * <code>jbang DistanceSensor.java --polling</code>
  */
 
 // Config for CrowPi 2: trigger on BCM 16 and echo on BCM 26
 private static final int BCM_TRIGGER = 16;
 private static final int BCM_ECHO = 26;
 
+// The sensor needs about 60ms between measurements to not receive the echo of the previous one,
+// and an echo pulse of 30ms is already more than 5m
+private static final long DEFAULT_INTERVAL_MILLIS = 60;
+private static final long DEFAULT_TIMEOUT_MILLIS = 30;
+
 private static DigitalOutput trigger;
 private static DigitalInput echo;
+private static GpioLines echoLine;
 
-void main() {
+void main(String[] args) {
     System.out.println("Starting distance sensor example...");
 
+    boolean polling = false;
+    long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+    long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    Path record = null;
+    for (String arg : args) {
+        if (arg.equals("--polling")) {
+            polling = true;
+        } else if (arg.startsWith("--interval=")) {
+            intervalMillis = Long.parseLong(arg.substring("--interval=".length()));
+        } else if (arg.startsWith("--timeout=")) {
+            timeoutMillis = Long.parseLong(arg.substring("--timeout=".length()));
+        } else if (arg.startsWith("--record=")) {
+            record = Path.of(arg.substring("--record=".length()));
+        }
+    }
+
     // Initialize Pi4J context
     var pi4j = Pi4J.newAutoContext();
+    PrintWriter recorder = null;
 
     try {
         // Initialize the output pin
         trigger = pi4j.digitalOutput().create(BCM_TRIGGER);
         trigger.low();
 
-        // Initialize the input pin
-        var echoConfig = DigitalInput.newConfigBuilder(pi4j)
-                .bcm(BCM_ECHO)
-                .pull(PullResistance.PULL_UP);
-        echo = pi4j.create(echoConfig);
+        if (polling) {
+            // Initialize the input pin
+            var echoConfig = DigitalInput.newConfigBuilder(pi4j)
+                    .bcm(BCM_ECHO)
+                    .pull(PullResistance.PULL_UP);
+            echo = pi4j.create(echoConfig);
+
+            // Loop and measure the distance 5 times per second
+            while (true) {
+                measureDistance();
+                Thread.sleep(200);
+            }
+        }
 
-        // Loop and measure the distance 5 times per second
+        // Request the echo pin with edge events on both edges, instead of as a Pi4J input
+        echoLine = GpioLines.input(GpioLines.DEFAULT_CHIP, "distance-echo",
+                GpioLines.FLAG_EDGE_BOTH | GpioLines.FLAG_BIAS_PULL_UP, BCM_ECHO);
+
+        // Measure at a fixed rate, the next measurement is planned from the start of the previous one
+        long intervalNanos = intervalMillis * 1_000_000L;
+        long timeoutNanos = timeoutMillis * 1_000_000L;
+        var filter = new DistanceFilter();
+        if (record != null) {
+            // Flushed on every line, as the example only stops when it is killed
+            recorder = new PrintWriter(Files.newBufferedWriter(record), true);
+            System.out.println("Recording readings to " + record);
+        }
+        long next = System.nanoTime();
         while (true) {
-            measureDistance();
-            Thread.sleep(200);
+            long echoNanos = measureEcho(timeoutNanos);
+            // Half of the distance the sound traveled at 34300 cm/s, -1 for a missing echo
+            double distance = echoNanos < 0 ? -1 : getSecondsDifference(0, echoNanos) * 34300 / 2;
+            double filtered = filter.add(distance);
+            if (recorder != null) {
+                recorder.println(distance);
+            }
+            if (echoNanos < 0) {
+                System.out.println("No echo received within " + timeoutMillis + "ms");
+            } else {
+                System.out.printf("Measured distance is: %.1fcm, filtered %.1fcm%n", distance, filtered);
+            }
+
+            next += intervalNanos;
+            long remaining;
+            while ((remaining = next - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
         }
     } catch (Exception ex) {
         System.err.println("Error: " + ex.getMessage());
     } finally {
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (echoLine != null) {
+            echoLine.close();
+        }
         // Shutdown the Pi4J context
         pi4j.shutdown();
     }
 }
 
+/**
+ * Triggers a measurement and measures the width of the echo pulse with the kernel timestamps of its edges.
+ *
+ * @param timeoutNanos Maximum time to wait for the end of the echo pulse
+ * @return Width of the echo pulse in nanoseconds, or -1 if it didn't end within the timeout
+ */
+private static long measureEcho(long timeoutNanos) {
+    // Drop edges of an earlier, timed out measurement
+    echoLine.discardEvents();
+    sendTrigger();
+
+    long deadline = System.nanoTime() + timeoutNanos;
+    long risingEdge = -1;
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+        int events = echoLine.readEvents(remaining);
+        for (int i = 0; i < events; i++) {
+            if (echoLine.getEventId(i) == GpioLines.EVENT_RISING_EDGE) {
+                risingEdge = echoLine.getEventTimestamp(i);
+            } else if (risingEdge >= 0) {
+                return echoLine.getEventTimestamp(i) - risingEdge;
+            }
+        }
+    }
+    return -1;
+}
+
+/**
+ * Sets the trigger high for 10µs.
+ * Pi4J V2+ only provides a pulse method for milliseconds, but the distance sensor needs a short pulse...
+ * This is reaching the limits of what a programming language on Linux can do, but we can try ;-)
+ */
+private static void sendTrigger() {
+    trigger.state(DigitalState.HIGH);
+    long startTrigger = System.nanoTime();
+    while (System.nanoTime() - startTrigger < 10_000) {
+        // Busy wait
+    }
+    trigger.state(DigitalState.LOW);
+}
+
 private static void measureDistance() {
     try {
         // Set trigger high for 0.01ms
-        // Pi4J V2+ only provides a pulse method for milliseconds, but the distance sensor needs a short pulse...
-        // This is reaching the limits of what a programming language on Linux can do, but we can try ;-)
-        trigger.state(DigitalState.HIGH);
-        long startTrigger = System.nanoTime();
-        while (System.nanoTime() - startTrigger < 10) {
-            // Busy wait
-        }
-        trigger.state(DigitalState.LOW);
+        sendTrigger();
 
         // Start the measurement
         while (echo.isLow()) {
@@ -0,0 +1,68 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/LogicCapture.java
+
+import helper.GpioLines;
+import helper.LogicCapture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Example code to use the Raspberry Pi as a logic analyzer, to check the wiring of the other examples.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * Every transition of the pins is written to a Value Change Dump file with a nanosecond timestamp,
+ * see {@link LogicCapture}. Open the file with GTKWave to see the signals: <code>gtkwave capture.vcd</code>
+ * <p>
+ * The pins are requested as inputs, so they can't be used by another example at the same time. To check
+ * the signal of a sensor, capture its output pin, e.g. the echo pin of the distance sensor on BCM 26.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with the BCM numbers of the pins,
+ * by default the button on BCM 22 and the echo of the distance sensor on BCM 26:
+ * <code>jbang LogicAnalyzer.java</code>
+ * <code>jbang LogicAnalyzer.java 22 26 --seconds=30 --file=wiring.vcd</code>
+ */
+
+void main(String[] args) throws IOException, InterruptedException {
+    long seconds = 10;
+    var file = Path.of("capture.vcd");
+    int[] pins = new int[args.length];
+    int pinCount = 0;
+    for (String arg : args) {
+        if (arg.startsWith("--seconds=")) {
+            seconds = Long.parseLong(arg.substring("--seconds=".length()));
+        } else if (arg.startsWith("--file=")) {
+            file = Path.of(arg.substring("--file=".length()));
+        } else {
+            pins[pinCount++] = Integer.parseInt(arg);
+        }
+    }
+    if (pinCount == 0) {
+        pins = new int[]{22, 26};
+        pinCount = pins.length;
+    }
+    pins = Arrays.copyOf(pins, pinCount);
+
+    System.out.println("Capturing " + pinCount + " pins for " + seconds + " seconds into " + file);
+    var capture = new LogicCapture(GpioLines.DEFAULT_CHIP, file, pins);
+    try {
+        for (long second = 1; second <= seconds; second++) {
+            Thread.sleep(1_000);
+            System.out.println(second + "s: " + capture.getTransitions() + " transitions");
+        }
+    } finally {
+        capture.close();
+    }
+    System.out.println("Done, " + capture.getTransitions() + " transitions, " + capture.getKernelDrops()
+            + " dropped by the kernel, " + capture.getRingDrops() + " dropped in the ring");
+}
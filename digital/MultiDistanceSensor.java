@@ -0,0 +1,64 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/UltrasonicScheduler.java
+
+import helper.GpioLines;
+import helper.UltrasonicScheduler;
+
+/**
+ * Example code to measure the distance with several ultrasonic sensors at the same time.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * Sensors that are triggered at the same time hear each other's echoes, so the {@link UltrasonicScheduler}
+ * fires them one after the other from one timing thread, and starts the next one as soon as the echo of the
+ * previous one is received. This example reads the latest distance of every sensor twice per second, without
+ * ever blocking the measurements.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with the sensors as trigger:echo BCM pairs,
+ * by default the single sensor of the CrowPi 2 on 16:26:
+ * <code>jbang MultiDistanceSensor.java 16:26 20:21</code>
+ */
+
+private static final long TIMEOUT_MILLIS = 30;
+private static final long GUARD_MILLIS = 5;
+
+void main(String[] args) throws InterruptedException {
+    String[] sensors = args.length > 0 ? args : new String[]{"16:26"};
+    int[] triggerPins = new int[sensors.length];
+    int[] echoPins = new int[sensors.length];
+    for (int i = 0; i < sensors.length; i++) {
+        String[] pins = sensors[i].split(":");
+        triggerPins[i] = Integer.parseInt(pins[0]);
+        echoPins[i] = Integer.parseInt(pins[1]);
+    }
+
+    System.out.println("Starting " + sensors.length + " distance sensors...");
+    try (var scheduler = new UltrasonicScheduler(GpioLines.DEFAULT_CHIP, triggerPins, echoPins,
+            TIMEOUT_MILLIS, GUARD_MILLIS)) {
+        long start = System.nanoTime();
+        for (int report = 0; report < 120; report++) {
+            Thread.sleep(500);
+
+            var line = new StringBuilder();
+            long total = 0;
+            for (int sensor = 0; sensor < scheduler.getSensorCount(); sensor++) {
+                var reading = scheduler.getReading(sensor);
+                total += reading.measurements();
+                line.append(sensors[sensor]).append(": ")
+                        .append(reading.distanceCm() < 0 ? "no echo" : String.format("%.1fcm", reading.distanceCm()))
+                        .append(" (").append(reading.missed()).append(" missed)   ");
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("%s%.1f measurements/s%n", line, total / seconds);
+        }
+    }
+    System.out.println("Done");
+}
@@ -0,0 +1,96 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/EdgeCounter.java
+
+import helper.EdgeCounter;
+import helper.GpioLines;
+
+import java.util.Arrays;
+
+/**
+ * Example code to count pulses and measure their frequency, e.g. of a flow meter or a rotary encoder.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * The {@link EdgeCounter} counts the rising edges without debounce and without a listener per edge,
+ * so it keeps up with tens of kHz. Twice per second, the count since the previous report, the frequency
+ * over the last 100ms and the last second, and the period are printed.
+ * <p>
+ * Without a pulse source, connect an output pin to the input pin and let this example generate a test signal
+ * on it with <code>--generate=PIN,HZ</code>, which busy-waits on its own thread.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with the BCM numbers of the input pins:
+ * <code>jbang PulseFrequency.java 22</code>
+ * <code>jbang PulseFrequency.java 22 --generate=27,20000</code>
+ */
+
+void main(String[] args) throws InterruptedException {
+    int generatorPin = -1;
+    long generatorHz = 0;
+    int[] pins = new int[args.length];
+    int pinCount = 0;
+    for (String arg : args) {
+        if (arg.startsWith("--generate=")) {
+            String[] values = arg.substring("--generate=".length()).split(",");
+            generatorPin = Integer.parseInt(values[0]);
+            generatorHz = Long.parseLong(values[1]);
+        } else {
+            pins[pinCount++] = Integer.parseInt(arg);
+        }
+    }
+    pins = pinCount == 0 ? new int[]{22} : Arrays.copyOf(pins, pinCount);
+
+    Thread generator = null;
+    if (generatorPin >= 0) {
+        generator = startGenerator(generatorPin, generatorHz);
+        System.out.println("Generating " + generatorHz + "Hz on BCM " + generatorPin);
+    }
+
+    try (var counter = new EdgeCounter(GpioLines.DEFAULT_CHIP, pins)) {
+        System.out.println("Counting the rising edges on " + pins.length + " pins...");
+        for (int report = 0; report < 60; report++) {
+            Thread.sleep(500);
+            for (int line = 0; line < counter.getLineCount(); line++) {
+                System.out.printf("BCM %d: %d pulses, %.1fHz (100ms), %.1fHz (1s), period %.1fµs (last %.1fµs), %d dropped%n",
+                        pins[line], counter.resetCount(line),
+                        counter.getFrequency(line, 100), counter.getFrequency(line),
+                        counter.getPeriod(line) / 1000.0, counter.getLastPeriod(line) / 1000.0,
+                        counter.getDropped(line));
+            }
+        }
+    } finally {
+        if (generator != null) {
+            generator.interrupt();
+            generator.join();
+        }
+    }
+    System.out.println("Done");
+}
+
+/**
+ * Toggles an output pin at the given frequency, with a busy wait for an accurate period at high rates
+ */
+private static Thread startGenerator(int pin, long hz) {
+    long halfPeriod = 500_000_000L / hz;
+    return Thread.ofPlatform().name("pulse-generator").daemon().start(() -> {
+        try (var output = GpioLines.output(GpioLines.DEFAULT_CHIP, "pulse-generator", pin)) {
+            long next = System.nanoTime();
+            boolean high = false;
+            while (!Thread.currentThread().isInterrupted()) {
+                next += halfPeriod;
+                while (next - System.nanoTime() > 0) {
+                    Thread.onSpinWait();
+                }
+                high = !high;
+                output.setValue(0, high);
+            }
+        }
+    });
+}
@@ -12,13 +12,24 @@
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 
+//SOURCES helper/GpioSequence.java
+//SOURCES helper/LatencyHistogram.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.io.gpio.digital.DigitalOutput;
+import helper.GpioSequence;
+import helper.LatencyHistogram;
 
 /**
  * Example code to blink three LEDs (DigitalOutput).
  * Make sure to follow the README of this project to learn more about JBang and how to install it.
  * <p>
+ * The blinking and the Morse message are compiled into a {@link GpioSequence} first, and played with absolute
+ * deadlines, so the timing doesn't drift. The lateness of the LED changes is printed after each sequence.
+ * <p>
+ * Every LED is a separate output here, see <code>RgbLedGroup.java</code> to switch them together with one
+ * system call.
+ * <p>
  * From the terminal, in the `digital` directory, start this example with:
  * <code>jbang RgbLed.java</code>
  */
@@ -82,16 +93,25 @@ void main() throws Exception {
 private static void blink10(DigitalOutput led) throws InterruptedException {
     System.out.println("Start blinking LED " + led.bcm());
 
-    for (int i = 0; i < 10; i++) {
-        led.toggle();
-        Thread.sleep(250);
-    }
+    // Toggle 10 times with 250ms in between, and end with the led off
+    var sequence = new GpioSequence().blink(led.bcm(), 10, 250);
+    play(sequence, led);
 
-    // Make sure the led is off
-    led.low();
     System.out.println("LED " + led.bcm() + " is off");
 }
 
+private static void play(GpioSequence sequence, DigitalOutput led) throws InterruptedException {
+    var jitter = new LatencyHistogram();
+    sequence.play((_, high) -> {
+        if (high) {
+            led.high();
+        } else {
+            led.low();
+        }
+    }, jitter);
+    System.out.println("Lateness of " + sequence.size() + " changes: " + jitter.summary());
+}
+
 // Contributed by Jonathan Stronkhorst
 // Morse translator: https://morsecode.world/international/translator.html
 // Guide for the Morse timing: https://re06.org/how-to-read-morse-code-a-step-by-step-guide-to-timing-rhythm-and-practice-for-beginners/
@@ -106,22 +126,7 @@ private static void morseHelloWorld(DigitalOutput led) throws InterruptedExcepti
      * gap between letters is 3 units
      * gap between words is 7 units
      */
-    for (char c : helloWorld.toCharArray()) {
-        System.out.println("Morse: " + c);
-        if (c == '.') {
-            led.high();
-            Thread.sleep(100);
-            led.low();
-            Thread.sleep(100);
-        } else if (c == '-') {
-            led.high();
-            Thread.sleep(300);
-            led.low();
-            Thread.sleep(100);
-        } else if (c == ' ') {
-            Thread.sleep(200);
-        } else if (c == '/') {
-            Thread.sleep(300);
-        }
-    }
+    System.out.println("Morse: " + helloWorld);
+    var sequence = new GpioSequence().morse(led.bcm(), helloWorld, 100);
+    play(sequence, led);
 }
@@ -0,0 +1,67 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/DigitalOutputGroup.java
+
+import helper.DigitalOutputGroup;
+import helper.GpioLines;
+
+/**
+ * Example code to switch the three LEDs of <code>RgbLed.java</code> together, as one {@link DigitalOutputGroup}.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * Every color is a 3-bit value, red is bit 0, green bit 1 and blue bit 2, and is set with one system call, so
+ * the LEDs change at the same moment. At the end, the time to change all three LEDs pin by pin and as a group
+ * is compared.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with:
+ * <code>jbang RgbLedGroup.java</code>
+ */
+
+// Connect a LED to PIN 16 = BCM 23
+private static final int BCM_RED = 23;
+// Connect a LED to PIN 18 = BCM 24
+private static final int BCM_GREEN = 24;
+// Connect a LED to PIN 22 = BCM 25
+private static final int BCM_BLUE = 25;
+
+private static final String[] COLORS = {"off", "red", "green", "yellow", "blue", "magenta", "cyan", "white"};
+private static final int ROUNDS = 10_000;
+
+void main() throws InterruptedException {
+    try (var leds = new DigitalOutputGroup(GpioLines.DEFAULT_CHIP, BCM_RED, BCM_GREEN, BCM_BLUE)) {
+        // Show all combinations of the three colors
+        for (int color = 1; color < COLORS.length; color++) {
+            leds.write(color);
+            System.out.println("Color " + COLORS[color]);
+            Thread.sleep(1_000);
+        }
+
+        // Toggle all three LEDs, once pin by pin and once together
+        leds.write(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (int pin = 0; pin < leds.size(); pin++) {
+                leds.set(pin, !leds.isHigh(pin));
+            }
+        }
+        long perPin = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            leds.toggle(0b111);
+        }
+        long grouped = System.nanoTime() - start;
+
+        System.out.printf("Changing 3 LEDs pin by pin: %.1f µs, as a group: %.1f µs, %d system calls in total%n",
+                perPin / 1000.0 / ROUNDS, grouped / 1000.0 / ROUNDS, leds.getWrites());
+    }
+    System.out.println("All three off");
+}
@@ -0,0 +1,75 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/GpioLines.java
+//SOURCES helper/LatencyHistogram.java
+//SOURCES helper/SoftwarePwm.java
+
+import helper.GpioLines;
+import helper.LatencyHistogram;
+import helper.SoftwarePwm;
+
+import java.time.Duration;
+
+/**
+ * Example code to mix colors with an RGB LED, or to dim a row of LEDs, with software PWM.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * <p>
+ * <code>RgbLed.java</code> can only turn every color fully on or off. Here, all pins are driven by one
+ * {@link SoftwarePwm} thread at 200Hz with an 8-bit duty cycle per pin. The duty cycles of all pins are changed
+ * together, so the colors go around the color wheel without flashes in between. At the end, the lateness of
+ * the edges and the CPU use of the process are printed.
+ * <p>
+ * From the terminal, in the `digital` directory, start this example with the red, green and blue LEDs of
+ * <code>RgbLed.java</code>:
+ * <code>jbang RgbLedPwm.java</code>
+ * <p>
+ * Or with the BCM numbers of more LEDs, which then show a running wave:
+ * <code>jbang RgbLedPwm.java 4 5 6 12 13 16 17 20 21 22 23 24 25 26 27</code>
+ */
+
+// Connect the LEDs to PIN 16 = BCM 23, PIN 18 = BCM 24 and PIN 22 = BCM 25
+private static final int[] BCM_RGB = {23, 24, 25};
+private static final int FREQUENCY_HZ = 200;
+private static final int STEPS = 500;
+
+void main(String[] args) throws InterruptedException {
+    int[] pins = args.length == 0 ? BCM_RGB : new int[args.length];
+    for (int i = 0; i < args.length; i++) {
+        pins[i] = Integer.parseInt(args[i]);
+    }
+    boolean rgb = args.length == 0;
+
+    var jitter = new LatencyHistogram();
+    var cpuBefore = ProcessHandle.current().info().totalCpuDuration().orElse(Duration.ZERO);
+    long start = System.nanoTime();
+
+    long periods;
+    try (var pwm = new SoftwarePwm(GpioLines.DEFAULT_CHIP, FREQUENCY_HZ, 50_000, jitter, pins)) {
+        System.out.println("Software PWM started on " + pins.length + " pins");
+        int[] duties = new int[pins.length];
+        for (int step = 0; step < STEPS; step++) {
+            double phase = step / (double) STEPS * 4 * Math.PI;
+            for (int pin = 0; pin < pins.length; pin++) {
+                // Colors or LEDs follow each other with an equal phase shift
+                double shift = (rgb ? pin / 3.0 : pin / (double) pins.length) * 2 * Math.PI;
+                duties[pin] = (int) Math.round(127.5 + 127.5 * Math.sin(phase - shift));
+            }
+            pwm.setDuties(duties);
+            Thread.sleep(20);
+        }
+        periods = pwm.getPeriods();
+    }
+
+    double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+    var cpu = ProcessHandle.current().info().totalCpuDuration().orElse(Duration.ZERO).minus(cpuBefore);
+    System.out.printf("%d periods in %.1fs, CPU use %.1f%%%n", periods, seconds,
+            cpu.toNanos() / 10_000_000.0 / seconds);
+    System.out.println("Lateness of the edges: " + jitter.summary());
+}
@@ -0,0 +1,135 @@
+package helper;
+
+/**
+ * Group of digital outputs that are always written together, e.g. the three colors of an RGB LED or an 8-bit bus.
+ * <p>
+ * With a Pi4J <code>DigitalOutput</code> per pin, every <code>high()</code> or <code>low()</code> is a system call
+ * of its own, so the pins change one after the other. Here, the pins are requested as one {@link GpioLines}
+ * request, and every change of one or more pins is a single system call, so all pins change at the same moment.
+ * <p>
+ * The state of the pins is kept in Java, so toggling doesn't need to read the pins first, and a write that
+ * doesn't change anything is skipped. Bit 0 of a value is the first pin of the group. This class is not
+ * thread-safe.
+ */
+public class DigitalOutputGroup implements AutoCloseable {
+
+    private final GpioLines lines;
+    private final int[] pins;
+    private final long allMask;
+    private long state = 0;
+    private long writes = 0;
+
+    /**
+     * Requests the pins as outputs, which are all set low.
+     *
+     * @param chip GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param pins BCM numbers of the pins, the first pin is bit 0
+     */
+    public DigitalOutputGroup(String chip, int... pins) {
+        this.lines = GpioLines.output(chip, "output-group", pins);
+        this.pins = pins.clone();
+        this.allMask = pins.length == 64 ? -1L : (1L << pins.length) - 1;
+    }
+
+    /**
+     * @return Number of pins in the group
+     */
+    public int size() {
+        return pins.length;
+    }
+
+    /**
+     * @param index Index of the pin in the group
+     * @return BCM number of the pin
+     */
+    public int getPin(int index) {
+        return pins[index];
+    }
+
+    /**
+     * @return Value of all pins, bit 0 is the first pin
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @param index Index of the pin in the group
+     * @return True if the pin is high
+     */
+    public boolean isHigh(int index) {
+        return (state & (1L << index)) != 0;
+    }
+
+    /**
+     * @return Number of system calls to change the pins
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Sets all pins at once, e.g. <code>write(0b101)</code> sets the first and third pin high and the others low.
+     *
+     * @param value Value of all pins, bit 0 is the first pin
+     */
+    public void write(long value) {
+        write(value, allMask);
+    }
+
+    /**
+     * Sets some pins at once, the other pins keep their value.
+     *
+     * @param value Values as bits, bit 0 is the first pin
+     * @param mask  Pins to set
+     */
+    public void write(long value, long mask) {
+        mask &= allMask;
+        long next = (state & ~mask) | (value & mask);
+        if (next == state) {
+            return;
+        }
+        // Only the pins that change are written
+        lines.setValues(next, next ^ state);
+        state = next;
+        writes++;
+    }
+
+    /**
+     * @param mask Pins to set high, bit 0 is the first pin
+     */
+    public void high(long mask) {
+        write(-1L, mask);
+    }
+
+    /**
+     * @param mask Pins to set low, bit 0 is the first pin
+     */
+    public void low(long mask) {
+        write(0, mask);
+    }
+
+    /**
+     * @param mask Pins to toggle, bit 0 is the first pin
+     */
+    public void toggle(long mask) {
+        write(~state, mask);
+    }
+
+    /**
+     * @param index Index of the pin in the group
+     * @param high  True to set the pin high
+     */
+    public void set(int index, boolean high) {
+        write(high ? -1L : 0, 1L << index);
+    }
+
+    /**
+     * Sets all pins low and releases them.
+     */
+    @Override
+    public void close() {
+        low(allMask);
+        lines.close();
+    }
+}
@@ -0,0 +1,190 @@
+package helper;
+
+import java.util.Arrays;
+
+/**
+ * Streaming filter for the noisy readings of an ultrasonic distance sensor, with three stages:
+ * <ol>
+ *     <li>outlier rejection: missing echoes, readings outside of the sensor range, and readings that jump too far
+ *     from the rolling median are dropped. A jump that lasts for more than half of the window is a real change
+ *     and is accepted.</li>
+ *     <li>rolling median over the last accepted readings, kept in a fixed-size ring buffer</li>
+ *     <li>one-dimensional Kalman filter that smooths the median, which is an exponential smoother that adapts
+ *     its weight to the noise of the sensor</li>
+ * </ol>
+ * All state is kept in primitive arrays that are allocated once, so adding a sample doesn't allocate.
+ * An instance is not thread-safe.
+ */
+public class DistanceFilter {
+
+    private final double minDistance;
+    private final double maxDistance;
+    private final double maxDeviation;
+    private final double processNoise;
+    private final double measurementNoise;
+
+    /**
+     * Ring buffer with the accepted readings in order of arrival, and the same readings sorted for the median
+     */
+    private final double[] ring;
+    private final double[] sorted;
+    private int head = 0;
+    private int count = 0;
+
+    /**
+     * Outliers of the current jump, which are all accepted when the jump lasts for more than half of the window
+     */
+    private final double[] pending;
+    private int pendingCount = 0;
+
+    private double estimate = Double.NaN;
+    private double errorCovariance = 0;
+
+    private long samples = 0;
+    private long rejected = 0;
+
+    /**
+     * Creates a filter with typical settings for an HC-SR04: a range of 2 to 400cm, a median over 5 readings,
+     * and readings that differ more than 30cm from the median are outliers.
+     */
+    public DistanceFilter() {
+        this(5, 2, 400, 30, 0.5, 4);
+    }
+
+    /**
+     * @param window           Number of readings for the rolling median, odd for a true median
+     * @param minDistance      Lowest valid reading
+     * @param maxDistance      Highest valid reading
+     * @param maxDeviation     Maximum difference between a reading and the median before it's an outlier
+     * @param processNoise     Variance of the real distance between two readings, higher follows changes faster
+     * @param measurementNoise Variance of the median, higher smooths more
+     */
+    public DistanceFilter(int window, double minDistance, double maxDistance, double maxDeviation,
+                          double processNoise, double measurementNoise) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1");
+        }
+        this.ring = new double[window];
+        this.sorted = new double[window];
+        this.pending = new double[window / 2];
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.maxDeviation = maxDeviation;
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Adds a reading and returns the filtered distance.
+     *
+     * @param distance Measured distance, a negative value or NaN for a missing echo
+     * @return Filtered distance, which stays the same when the reading is rejected, NaN until a first reading is accepted
+     */
+    public double add(double distance) {
+        samples++;
+        if (!(distance >= minDistance && distance <= maxDistance)) {
+            rejected++;
+            return estimate;
+        }
+        if (count > ring.length / 2 && Math.abs(distance - getMedian()) > maxDeviation) {
+            if (pendingCount < pending.length) {
+                pending[pendingCount++] = distance;
+                return estimate;
+            }
+            // The jump lasted for more than half of the window, so it's a real change
+            for (int i = 0; i < pendingCount; i++) {
+                insert(pending[i]);
+            }
+        } else {
+            rejected += pendingCount;
+        }
+        pendingCount = 0;
+        insert(distance);
+
+        // Kalman update with the median as the measurement
+        double median = getMedian();
+        if (Double.isNaN(estimate)) {
+            estimate = median;
+            errorCovariance = measurementNoise;
+        } else {
+            errorCovariance += processNoise;
+            double gain = errorCovariance / (errorCovariance + measurementNoise);
+            estimate += gain * (median - estimate);
+            errorCovariance *= 1 - gain;
+        }
+        return estimate;
+    }
+
+    /**
+     * @return Last filtered distance, NaN until a first reading is accepted
+     */
+    public double getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * @return Median of the accepted readings in the window, NaN if there are none
+     */
+    public double getMedian() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        return (count & 1) == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2;
+    }
+
+    /**
+     * @return Number of readings added since the last reset
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return Number of readings rejected as missing, out of range or outlier since the last reset, the readings
+     * of a jump are only counted once it turns out to be too short
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Clears all readings, the estimate and the counters.
+     */
+    public void reset() {
+        head = 0;
+        count = 0;
+        pendingCount = 0;
+        estimate = Double.NaN;
+        errorCovariance = 0;
+        samples = 0;
+        rejected = 0;
+        Arrays.fill(ring, 0);
+        Arrays.fill(sorted, 0);
+    }
+
+    /**
+     * Adds a reading to the ring buffer, replacing the oldest one when full, and keeps the sorted copy
+     * in order by moving the elements in between, which is fast for the small windows used here.
+     */
+    private void insert(double distance) {
+        int position;
+        if (count == ring.length) {
+            // Remove the oldest reading from the sorted array, and shift the larger ones down
+            double oldest = ring[head];
+            position = Arrays.binarySearch(sorted, 0, count, oldest);
+            System.arraycopy(sorted, position + 1, sorted, position, count - position - 1);
+            count--;
+        }
+        ring[head] = distance;
+        head = (head + 1) % ring.length;
+
+        // Insert the new reading in the sorted array
+        position = count;
+        while (position > 0 && sorted[position - 1] > distance) {
+            sorted[position] = sorted[position - 1];
+            position--;
+        }
+        sorted[position] = distance;
+        count++;
+    }
+}
@@ -0,0 +1,246 @@
+package helper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts edges on one or more input lines at rates up to tens of kHz, e.g. of a flow meter or a rotary encoder,
+ * and measures their frequency and period over sliding windows.
+ * <p>
+ * A listener per edge, like <code>Button.java</code> uses, is too slow for this, and a debounce of a few
+ * milliseconds filters out real pulses. Here, a reader thread takes the edge events of a {@link GpioLines} request
+ * in batches of up to {@link GpioLines#READ_CAPACITY} per system call, and nothing is allocated per edge.
+ * <p>
+ * The counts are exact, because they are taken from the sequence number the kernel gives every edge on a line:
+ * when events are dropped because the reader thread falls behind, the next sequence number still includes them.
+ * Totals are kept in {@link LongAdder}s, added once per line per batch, so any thread can read or reset them
+ * without blocking the reader thread. The sliding windows consist of buckets per line with the kernel timestamp
+ * of the edges, and every bucket is one long with its number and count, so it is always read consistently.
+ */
+public class EdgeCounter implements AutoCloseable {
+
+    private static final long POLL_NANOS = 100_000_000L;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long BUCKET_MASK = -1L >>> COUNT_BITS;
+
+    private final GpioLines lines;
+    private final int lineCount;
+    private final long bucketNanos;
+    private final int buckets;
+    private final Thread reader;
+    private volatile boolean running = true;
+
+    /**
+     * Written by the reader thread, readable by every thread
+     */
+    private final LongAdder[] totals;
+    private final LongAdder[] dropped;
+    private final AtomicLongArray windows;
+    private final AtomicLongArray lastEdges;
+    private final AtomicLongArray lastPeriods;
+
+    /**
+     * Only used by the reader thread
+     */
+    private final int[] lastLineSeqnos;
+    private final long[] pendingCounts;
+    private final long[] pendingDropped;
+
+    /**
+     * Counts the rising edges of the given pins, with a window of one second in buckets of 10ms.
+     *
+     * @param chip GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param pins BCM numbers of the pins
+     */
+    public EdgeCounter(String chip, int... pins) {
+        this(chip, GpioLines.FLAG_EDGE_RISING, 0, 1000, 10, pins);
+    }
+
+    /**
+     * @param chip             GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param flags            Edges to count and bias, e.g. {@link GpioLines#FLAG_EDGE_RISING}
+     * @param debounceMicros   Debounce period of the kernel, 0 for none, which is needed for high rates
+     * @param windowMillis     Longest sliding window for the frequency
+     * @param resolutionMillis Size of one bucket of the sliding windows
+     * @param pins             BCM numbers of the pins
+     */
+    public EdgeCounter(String chip, long flags, int debounceMicros, long windowMillis, long resolutionMillis,
+                       int... pins) {
+        if (resolutionMillis <= 0 || windowMillis < resolutionMillis) {
+            throw new IllegalArgumentException("The window must contain at least one bucket");
+        }
+        this.lineCount = pins.length;
+        this.bucketNanos = resolutionMillis * 1_000_000L;
+        // One extra bucket, which is being filled while the others are complete
+        this.buckets = (int) (windowMillis / resolutionMillis) + 1;
+        this.totals = new LongAdder[lineCount];
+        this.dropped = new LongAdder[lineCount];
+        for (int i = 0; i < lineCount; i++) {
+            totals[i] = new LongAdder();
+            dropped[i] = new LongAdder();
+        }
+        this.windows = new AtomicLongArray(lineCount * buckets);
+        this.lastEdges = new AtomicLongArray(lineCount);
+        this.lastPeriods = new AtomicLongArray(lineCount);
+        this.lastLineSeqnos = new int[lineCount];
+        this.pendingCounts = new long[lineCount];
+        this.pendingDropped = new long[lineCount];
+
+        // A large kernel buffer, so a short hiccup of the reader thread doesn't drop events
+        this.lines = new GpioLines(chip, "edge-counter", GpioLines.FLAG_INPUT | flags, debounceMicros,
+                1024, pins);
+        this.reader = Thread.ofPlatform().name("edge-counter").daemon().start(this::readLoop);
+    }
+
+    /**
+     * @return Number of lines
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @param line Index of the line, in the order of the pins
+     * @return Number of edges since the start or the last {@link #resetCount(int)}
+     */
+    public long getCount(int line) {
+        return totals[line].sum();
+    }
+
+    /**
+     * Gets the count and starts counting from zero again, so no edge is counted twice or missed in between.
+     *
+     * @param line Index of the line
+     * @return Number of edges since the start or the previous reset
+     */
+    public long resetCount(int line) {
+        return totals[line].sumThenReset();
+    }
+
+    /**
+     * @param line Index of the line
+     * @return Number of edges that were counted, but dropped by the kernel before they could be read
+     */
+    public long getDropped(int line) {
+        return dropped[line].sum();
+    }
+
+    /**
+     * Gets the average frequency over the longest window.
+     *
+     * @param line Index of the line
+     * @return Edges per second
+     */
+    public double getFrequency(int line) {
+        return getFrequency(line, (buckets - 1) * bucketNanos / 1_000_000L);
+    }
+
+    /**
+     * Gets the average frequency over the most recent complete buckets.
+     *
+     * @param line         Index of the line
+     * @param windowMillis Window, rounded down to whole buckets and limited to the longest window
+     * @return Edges per second
+     */
+    public double getFrequency(int line, long windowMillis) {
+        int window = (int) Math.clamp(windowMillis * 1_000_000L / bucketNanos, 1, buckets - 1);
+        long current = System.nanoTime() / bucketNanos;
+        long edges = 0;
+        for (long i = current - window; i < current; i++) {
+            long bucket = i & BUCKET_MASK;
+            long packed = windows.getAcquire(line * buckets + (int) (bucket % buckets));
+            if (packed >>> COUNT_BITS == bucket) {
+                edges += packed & COUNT_MASK;
+            }
+        }
+        return edges * 1_000_000_000.0 / (window * bucketNanos);
+    }
+
+    /**
+     * Gets the time between the two latest edges, which follows every change immediately.
+     *
+     * @param line Index of the line
+     * @return Period in nanoseconds, 0 if there were less than two edges
+     */
+    public long getLastPeriod(int line) {
+        return lastPeriods.get(line);
+    }
+
+    /**
+     * Gets the average period over the longest window, which is more stable than {@link #getLastPeriod(int)}.
+     *
+     * @param line Index of the line
+     * @return Period in nanoseconds, 0 if there were no edges in the window
+     */
+    public long getPeriod(int line) {
+        double frequency = getFrequency(line);
+        return frequency == 0 ? 0 : Math.round(1_000_000_000.0 / frequency);
+    }
+
+    /**
+     * @param line Index of the line
+     * @return Kernel timestamp of the latest edge, comparable with {@link System#nanoTime()}, 0 if there is none
+     */
+    public long getLastEdge(int line) {
+        return lastEdges.get(line);
+    }
+
+    /**
+     * Stops the reader thread and releases the pins.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lines.close();
+    }
+
+    private void readLoop() {
+        while (running) {
+            int events = lines.readEvents(POLL_NANOS);
+            for (int i = 0; i < events; i++) {
+                int line = lines.indexOf(lines.getEventOffset(i));
+                int lineSeqno = lines.getEventLineSeqno(i);
+                long edges = lineSeqno - lastLineSeqnos[line];
+                lastLineSeqnos[line] = lineSeqno;
+                pendingCounts[line] += edges;
+                pendingDropped[line] += edges - 1;
+
+                long timestamp = lines.getEventTimestamp(i);
+                addToWindow(line, timestamp, edges);
+                long previous = lastEdges.getPlain(line);
+                if (previous != 0 && edges == 1) {
+                    lastPeriods.setRelease(line, timestamp - previous);
+                }
+                lastEdges.setRelease(line, timestamp);
+            }
+            // Publish the totals once per batch instead of once per edge
+            for (int line = 0; line < lineCount; line++) {
+                if (pendingCounts[line] != 0) {
+                    totals[line].add(pendingCounts[line]);
+                    pendingCounts[line] = 0;
+                }
+                if (pendingDropped[line] != 0) {
+                    dropped[line].add(pendingDropped[line]);
+                    pendingDropped[line] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds edges to the bucket of the timestamp, a bucket that still holds an older number is started from zero
+     */
+    private void addToWindow(int line, long timestamp, long edges) {
+        long bucket = (timestamp / bucketNanos) & BUCKET_MASK;
+        int index = line * buckets + (int) (bucket % buckets);
+        long packed = windows.getPlain(index);
+        long count = packed >>> COUNT_BITS == bucket ? packed & COUNT_MASK : 0;
+        windows.setRelease(index, bucket << COUNT_BITS | Math.min(COUNT_MASK, count + edges));
+    }
+}
@@ -0,0 +1,179 @@
+package helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer, single-consumer ring buffer for GPIO edge events.
+ * <p>
+ * A reader thread waits for the edge events of a {@link GpioLines} request and copies each event into the ring,
+ * with the timestamp the kernel took in its interrupt handler and the {@link System#nanoTime()} when Java read it.
+ * A consumer drains the ring on its own thread, so a slow handler never delays the reading of the next events.
+ * The ring consists of primitive arrays, so no objects are created per event.
+ * <p>
+ * Events are lost when the consumer falls behind by more than the capacity of the ring, or the reader thread by
+ * more than the event buffer of the kernel. Both are counted, the latter from gaps in the sequence numbers of the
+ * kernel, so lost presses can't go unnoticed.
+ */
+public class GpioEventRing implements AutoCloseable {
+
+    private static final long POLL_NANOS = 100_000_000L;
+
+    private final int mask;
+    private final long[] kernelTimestamps;
+    private final long[] readTimestamps;
+    private final int[] offsets;
+    private final int[] edges;
+    private final int[] lineSeqnos;
+
+    /**
+     * Next slot to write, only advanced by the reader thread, and next slot to read, only advanced by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final GpioLines lines;
+    private final Thread reader;
+    private volatile Thread waitingConsumer;
+    private volatile boolean running = true;
+    private volatile long ringOverflows = 0;
+    private volatile long kernelOverflows = 0;
+    private int lastSeqno = 0;
+
+    /**
+     * Starts a reader thread for the edge events of the given lines.
+     *
+     * @param lines    Lines requested with edge detection, which are read by the reader thread only
+     * @param capacity Number of events the ring can hold, rounded up to a power of two
+     */
+    public GpioEventRing(GpioLines lines, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.kernelTimestamps = new long[size];
+        this.readTimestamps = new long[size];
+        this.offsets = new int[size];
+        this.edges = new int[size];
+        this.lineSeqnos = new int[size];
+        this.lines = lines;
+        this.reader = Thread.ofPlatform().name("gpio-event-reader").daemon().start(this::readLoop);
+    }
+
+    /**
+     * Handles one event, with all values as primitives
+     */
+    @FunctionalInterface
+    public interface EventHandler {
+        /**
+         * @param kernelNanos Time of the edge taken by the kernel, comparable with {@link System#nanoTime()}
+         * @param readNanos   Time the event was read by the reader thread
+         * @param offset      Offset of the line on the chip, which is the BCM number for the header pins
+         * @param edge        {@link GpioLines#EVENT_RISING_EDGE} or {@link GpioLines#EVENT_FALLING_EDGE}
+         * @param lineSeqno   Sequence number of the event on its line
+         */
+        void onEvent(long kernelNanos, long readNanos, int offset, int edge, int lineSeqno);
+    }
+
+    /**
+     * Passes all available events to the handler, on the calling thread.
+     *
+     * @param handler Handler to call for every event, in order
+     * @return Number of handled events
+     */
+    public int drain(EventHandler handler) {
+        long read = tail.get();
+        long available = head.getAcquire();
+        int handled = 0;
+        while (read < available) {
+            int slot = (int) read & mask;
+            handler.onEvent(kernelTimestamps[slot], readTimestamps[slot], offsets[slot], edges[slot], lineSeqnos[slot]);
+            read++;
+            handled++;
+            // Free the slot right away, so the reader can continue while a slow handler is running
+            tail.setRelease(read);
+        }
+        return handled;
+    }
+
+    /**
+     * Waits until events are available, only one consumer thread may wait at a time.
+     *
+     * @param timeoutNanos Maximum time to wait
+     * @return True if events are available
+     */
+    public boolean await(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        waitingConsumer = Thread.currentThread();
+        try {
+            long remaining;
+            // A volatile read after publishing the waiting thread, so the reader either sees it or this sees the events
+            while (head.get() == tail.get() && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+        return head.getAcquire() != tail.get();
+    }
+
+    /**
+     * @return Number of events dropped because the ring was full
+     */
+    public long getRingOverflows() {
+        return ringOverflows;
+    }
+
+    /**
+     * @return Number of events dropped by the kernel because its event buffer was full
+     */
+    public long getKernelOverflows() {
+        return kernelOverflows;
+    }
+
+    /**
+     * Stops the reader thread, the lines are not closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readLoop() {
+        while (running) {
+            int events = lines.readEvents(POLL_NANOS);
+            long now = System.nanoTime();
+            long write = head.get();
+            long free = mask + 1 - (write - tail.getAcquire());
+            for (int i = 0; i < events; i++) {
+                int seqno = lines.getEventSeqno(i);
+                if (lastSeqno != 0 && seqno - lastSeqno > 1) {
+                    kernelOverflows += seqno - lastSeqno - 1;
+                }
+                lastSeqno = seqno;
+                if (free == 0) {
+                    ringOverflows++;
+                    continue;
+                }
+                int slot = (int) write & mask;
+                kernelTimestamps[slot] = lines.getEventTimestamp(i);
+                readTimestamps[slot] = now;
+                offsets[slot] = lines.getEventOffset(i);
+                edges[slot] = lines.getEventId(i);
+                lineSeqnos[slot] = lines.getEventLineSeqno(i);
+                write++;
+                free--;
+            }
+            if (events > 0) {
+                head.set(write);
+                var consumer = waitingConsumer;
+                if (consumer != null) {
+                    LockSupport.unpark(consumer);
+                }
+            }
+        }
+    }
+}
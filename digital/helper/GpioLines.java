@@ -0,0 +1,482 @@
+package helper;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+import static java.lang.foreign.MemoryLayout.PathElement.sequenceElement;
+
+/**
+ * Requests one or more GPIO lines from the Linux GPIO character device with the v2 uAPI
+ * (<code>linux/gpio.h</code>), for what the Pi4J digital I/O doesn't expose: edge events with the
+ * timestamp the kernel took in its interrupt handler, reading or writing several lines in one system
+ * call, and waiting for events with a timeout.
+ * <p>
+ * The lines are requested directly with the Foreign Function &amp; Memory API, so they can't be used by
+ * Pi4J at the same time. A line that is already requested, e.g. with <code>pi4j.digitalInput().create()</code>,
+ * fails with errno 16 (EBUSY). Event timestamps use <code>CLOCK_MONOTONIC</code>, the same clock as
+ * {@link System#nanoTime()} on Linux, so they can be compared with timestamps taken in Java.
+ * <p>
+ * This requires a 64-bit OS and Java 22 or newer. Reading events and reading or writing values use separate
+ * native buffers, so each can be done by its own thread, but neither is thread-safe on its own.
+ */
+public class GpioLines implements AutoCloseable {
+
+    /**
+     * First GPIO chip, which has the header pins on all Raspberry Pi models with a recent kernel
+     */
+    public static final String DEFAULT_CHIP = "/dev/gpiochip0";
+
+    /**
+     * Line flags, can be combined
+     */
+    public static final long FLAG_ACTIVE_LOW = 1 << 1;
+    public static final long FLAG_INPUT = 1 << 2;
+    public static final long FLAG_OUTPUT = 1 << 3;
+    public static final long FLAG_EDGE_RISING = 1 << 4;
+    public static final long FLAG_EDGE_FALLING = 1 << 5;
+    public static final long FLAG_EDGE_BOTH = FLAG_EDGE_RISING | FLAG_EDGE_FALLING;
+    public static final long FLAG_BIAS_PULL_UP = 1 << 8;
+    public static final long FLAG_BIAS_PULL_DOWN = 1 << 9;
+    public static final long FLAG_BIAS_DISABLED = 1 << 10;
+
+    /**
+     * Event ids, as returned by {@link #getEventId(int)}
+     */
+    public static final int EVENT_RISING_EDGE = 1;
+    public static final int EVENT_FALLING_EDGE = 2;
+
+    /**
+     * Maximum number of lines in one request
+     */
+    public static final int MAX_LINES = 64;
+
+    /**
+     * Maximum number of events returned by one {@link #readEvents(long)}
+     */
+    public static final int READ_CAPACITY = 64;
+
+    private static final int O_RDWR = 0x02;
+    private static final short POLLIN = 0x01;
+    private static final int EINTR = 4;
+    private static final long GPIO_V2_GET_LINE_IOCTL = 0xC250B407L;
+    private static final long GPIO_V2_LINE_GET_VALUES_IOCTL = 0xC010B40EL;
+    private static final long GPIO_V2_LINE_SET_VALUES_IOCTL = 0xC010B40FL;
+    private static final int ATTR_ID_OUTPUT_VALUES = 2;
+    private static final int ATTR_ID_DEBOUNCE = 3;
+
+    /**
+     * struct gpio_v2_line_config_attribute, the attribute value is a union of flags, values and debounce period
+     */
+    private static final StructLayout LINE_CONFIG_ATTRIBUTE = MemoryLayout.structLayout(
+            ValueLayout.JAVA_INT.withName("id"),
+            MemoryLayout.paddingLayout(4),
+            ValueLayout.JAVA_LONG.withName("value"),
+            ValueLayout.JAVA_LONG.withName("mask")
+    );
+    /**
+     * struct gpio_v2_line_request
+     */
+    private static final StructLayout LINE_REQUEST = MemoryLayout.structLayout(
+            MemoryLayout.sequenceLayout(MAX_LINES, ValueLayout.JAVA_INT).withName("offsets"),
+            MemoryLayout.sequenceLayout(32, ValueLayout.JAVA_BYTE).withName("consumer"),
+            MemoryLayout.structLayout(
+                    ValueLayout.JAVA_LONG.withName("flags"),
+                    ValueLayout.JAVA_INT.withName("num_attrs"),
+                    MemoryLayout.paddingLayout(5 * 4),
+                    MemoryLayout.sequenceLayout(10, LINE_CONFIG_ATTRIBUTE).withName("attrs")
+            ).withName("config"),
+            ValueLayout.JAVA_INT.withName("num_lines"),
+            ValueLayout.JAVA_INT.withName("event_buffer_size"),
+            MemoryLayout.paddingLayout(5 * 4),
+            ValueLayout.JAVA_INT.withName("fd")
+    );
+    private static final long OFFSETS = LINE_REQUEST.byteOffset(groupElement("offsets"));
+    private static final long CONSUMER = LINE_REQUEST.byteOffset(groupElement("consumer"));
+    private static final long CONFIG_FLAGS = LINE_REQUEST.byteOffset(groupElement("config"), groupElement("flags"));
+    private static final long CONFIG_NUM_ATTRS = LINE_REQUEST.byteOffset(groupElement("config"), groupElement("num_attrs"));
+    private static final long CONFIG_ATTRS = LINE_REQUEST.byteOffset(groupElement("config"), groupElement("attrs"),
+            sequenceElement(0));
+    private static final long ATTR_ID = LINE_CONFIG_ATTRIBUTE.byteOffset(groupElement("id"));
+    private static final long ATTR_VALUE = LINE_CONFIG_ATTRIBUTE.byteOffset(groupElement("value"));
+    private static final long ATTR_MASK = LINE_CONFIG_ATTRIBUTE.byteOffset(groupElement("mask"));
+    private static final long NUM_LINES = LINE_REQUEST.byteOffset(groupElement("num_lines"));
+    private static final long EVENT_BUFFER_SIZE = LINE_REQUEST.byteOffset(groupElement("event_buffer_size"));
+    private static final long FD = LINE_REQUEST.byteOffset(groupElement("fd"));
+
+    /**
+     * struct gpio_v2_line_values
+     */
+    private static final StructLayout LINE_VALUES = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("bits"),
+            ValueLayout.JAVA_LONG.withName("mask")
+    );
+    private static final long BITS = LINE_VALUES.byteOffset(groupElement("bits"));
+    private static final long MASK = LINE_VALUES.byteOffset(groupElement("mask"));
+
+    /**
+     * struct gpio_v2_line_event
+     */
+    private static final StructLayout LINE_EVENT = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("timestamp_ns"),
+            ValueLayout.JAVA_INT.withName("id"),
+            ValueLayout.JAVA_INT.withName("offset"),
+            ValueLayout.JAVA_INT.withName("seqno"),
+            ValueLayout.JAVA_INT.withName("line_seqno"),
+            MemoryLayout.paddingLayout(6 * 4)
+    );
+    private static final long EVENT_SIZE = LINE_EVENT.byteSize();
+    private static final long EVENT_TIMESTAMP = LINE_EVENT.byteOffset(groupElement("timestamp_ns"));
+    private static final long EVENT_ID = LINE_EVENT.byteOffset(groupElement("id"));
+    private static final long EVENT_OFFSET = LINE_EVENT.byteOffset(groupElement("offset"));
+    private static final long EVENT_SEQNO = LINE_EVENT.byteOffset(groupElement("seqno"));
+    private static final long EVENT_LINE_SEQNO = LINE_EVENT.byteOffset(groupElement("line_seqno"));
+
+    /**
+     * struct pollfd and struct timespec
+     */
+    private static final StructLayout POLL_FD = MemoryLayout.structLayout(
+            ValueLayout.JAVA_INT.withName("fd"),
+            ValueLayout.JAVA_SHORT.withName("events"),
+            ValueLayout.JAVA_SHORT.withName("revents")
+    );
+    private static final StructLayout TIMESPEC = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("tv_sec"),
+            ValueLayout.JAVA_LONG.withName("tv_nsec")
+    );
+
+    /**
+     * Native libc bindings, errno is captured to report failures
+     */
+    private static final Linker linker = Linker.nativeLinker();
+    private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+    private static final long ERRNO = CALL_STATE.byteOffset(groupElement("errno"));
+    private static final MethodHandle libcOpen = linker.downcallHandle(
+            linker.defaultLookup().find("open").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT),
+            Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcIoctl = linker.downcallHandle(
+            linker.defaultLookup().find("ioctl").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            Linker.Option.firstVariadicArg(2), Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcRead = linker.downcallHandle(
+            linker.defaultLookup().find("read").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG),
+            Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcPpoll = linker.downcallHandle(
+            linker.defaultLookup().find("ppoll").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS),
+            Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcClose = linker.downcallHandle(
+            linker.defaultLookup().find("close").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+
+    private final Arena arena;
+    private final int[] offsets;
+    private final int fd;
+    // Buffers for reading and writing values
+    private final MemorySegment valuesCallState;
+    private final MemorySegment values;
+    // Buffers for waiting for and reading events
+    private final MemorySegment eventCallState;
+    private final MemorySegment events;
+    private final MemorySegment pollFd;
+    private final MemorySegment timeout;
+    private int eventCount = 0;
+
+    /**
+     * Requests lines as outputs, which are all set low.
+     *
+     * @param chip     GPIO chip device, e.g. {@link #DEFAULT_CHIP}
+     * @param consumer Name shown for the lines in <code>gpioinfo</code>
+     * @param offsets  Line offsets on the chip, which are the BCM numbers for the header pins
+     * @return Requested lines
+     */
+    public static GpioLines output(String chip, String consumer, int... offsets) {
+        return new GpioLines(chip, consumer, FLAG_OUTPUT, 0, 0, offsets);
+    }
+
+    /**
+     * Requests lines as inputs.
+     *
+     * @param chip     GPIO chip device, e.g. {@link #DEFAULT_CHIP}
+     * @param consumer Name shown for the lines in <code>gpioinfo</code>
+     * @param flags    Additional flags, e.g. {@link #FLAG_EDGE_BOTH} and {@link #FLAG_BIAS_PULL_UP}
+     * @param offsets  Line offsets on the chip, which are the BCM numbers for the header pins
+     * @return Requested lines
+     */
+    public static GpioLines input(String chip, String consumer, long flags, int... offsets) {
+        return new GpioLines(chip, consumer, FLAG_INPUT | flags, 0, 0, offsets);
+    }
+
+    /**
+     * Requests lines with the given configuration, which is the same for all lines.
+     *
+     * @param chip            GPIO chip device, e.g. {@link #DEFAULT_CHIP}
+     * @param consumer        Name shown for the lines in <code>gpioinfo</code>
+     * @param flags           Combination of the FLAG_ constants, with either {@link #FLAG_INPUT} or {@link #FLAG_OUTPUT}
+     * @param debounceMicros  Debounce period applied by the kernel to inputs, 0 for none
+     * @param eventBufferSize Number of events the kernel buffers before dropping them, 0 for the default of 16 per line
+     * @param offsets         Line offsets on the chip, which are the BCM numbers for the header pins
+     */
+    public GpioLines(String chip, String consumer, long flags, int debounceMicros, int eventBufferSize, int... offsets) {
+        if (offsets.length < 1 || offsets.length > MAX_LINES) {
+            throw new IllegalArgumentException("Number of lines must be between 1 and " + MAX_LINES);
+        }
+        this.offsets = offsets.clone();
+        this.arena = Arena.ofShared();
+        this.valuesCallState = arena.allocate(CALL_STATE);
+        this.values = arena.allocate(LINE_VALUES);
+        this.eventCallState = arena.allocate(CALL_STATE);
+        this.events = arena.allocate(EVENT_SIZE * READ_CAPACITY, LINE_EVENT.byteAlignment());
+        this.pollFd = arena.allocate(POLL_FD);
+        this.timeout = arena.allocate(TIMESPEC);
+
+        var request = arena.allocate(LINE_REQUEST);
+        for (int i = 0; i < offsets.length; i++) {
+            request.set(ValueLayout.JAVA_INT, OFFSETS + i * ValueLayout.JAVA_INT.byteSize(), offsets[i]);
+        }
+        byte[] name = consumer.getBytes();
+        MemorySegment.copy(name, 0, request, ValueLayout.JAVA_BYTE, CONSUMER, Math.min(name.length, 31));
+        request.set(ValueLayout.JAVA_LONG, CONFIG_FLAGS, flags);
+        int attributes = 0;
+        long allLines = offsets.length == 64 ? -1L : (1L << offsets.length) - 1;
+        if (debounceMicros > 0) {
+            long attribute = CONFIG_ATTRS + attributes++ * LINE_CONFIG_ATTRIBUTE.byteSize();
+            request.set(ValueLayout.JAVA_INT, attribute + ATTR_ID, ATTR_ID_DEBOUNCE);
+            request.set(ValueLayout.JAVA_LONG, attribute + ATTR_VALUE, debounceMicros);
+            request.set(ValueLayout.JAVA_LONG, attribute + ATTR_MASK, allLines);
+        }
+        if ((flags & FLAG_OUTPUT) != 0) {
+            long attribute = CONFIG_ATTRS + attributes++ * LINE_CONFIG_ATTRIBUTE.byteSize();
+            request.set(ValueLayout.JAVA_INT, attribute + ATTR_ID, ATTR_ID_OUTPUT_VALUES);
+            request.set(ValueLayout.JAVA_LONG, attribute + ATTR_VALUE, 0L);
+            request.set(ValueLayout.JAVA_LONG, attribute + ATTR_MASK, allLines);
+        }
+        request.set(ValueLayout.JAVA_INT, CONFIG_NUM_ATTRS, attributes);
+        request.set(ValueLayout.JAVA_INT, NUM_LINES, offsets.length);
+        request.set(ValueLayout.JAVA_INT, EVENT_BUFFER_SIZE, eventBufferSize);
+
+        int chipFd;
+        try {
+            chipFd = (int) libcOpen.invokeExact(valuesCallState, arena.allocateFrom(chip), O_RDWR);
+        } catch (Throwable e) {
+            arena.close();
+            throw new IllegalStateException("Failed to open " + chip, e);
+        }
+        if (chipFd < 0) {
+            int errno = errno(valuesCallState);
+            arena.close();
+            throw new IllegalStateException("Failed to open " + chip + ", errno " + errno);
+        }
+        int result = invokeIoctl(chipFd, GPIO_V2_GET_LINE_IOCTL, request);
+        int errno = errno(valuesCallState);
+        closeFd(chipFd);
+        if (result < 0) {
+            arena.close();
+            throw new IllegalStateException("Failed to request lines " + Arrays.toString(offsets)
+                    + " on " + chip + ", errno " + errno + (errno == 16 ? " (line busy)" : ""));
+        }
+        this.fd = request.get(ValueLayout.JAVA_INT, FD);
+        pollFd.set(ValueLayout.JAVA_INT, 0, fd);
+        pollFd.set(ValueLayout.JAVA_SHORT, 4, POLLIN);
+    }
+
+    /**
+     * @return Number of requested lines
+     */
+    public int getLineCount() {
+        return offsets.length;
+    }
+
+    /**
+     * @param line Index of the line in the request
+     * @return Offset of the line on the chip
+     */
+    public int getOffset(int line) {
+        return offsets[line];
+    }
+
+    /**
+     * @param offset Offset of a line on the chip, e.g. as returned by {@link #getEventOffset(int)}
+     * @return Index of the line in the request, or -1 if it isn't requested
+     */
+    public int indexOf(int offset) {
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] == offset) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the values of all lines in one system call.
+     *
+     * @return Values as bits, bit 0 is the first line of the request
+     */
+    public long getValues() {
+        values.set(ValueLayout.JAVA_LONG, MASK, -1L);
+        if (invokeIoctl(fd, GPIO_V2_LINE_GET_VALUES_IOCTL, values) < 0) {
+            throw new IllegalStateException("Failed to get line values, errno " + errno(valuesCallState));
+        }
+        return values.get(ValueLayout.JAVA_LONG, BITS);
+    }
+
+    /**
+     * @param line Index of the line in the request
+     * @return True if the line is high
+     */
+    public boolean getValue(int line) {
+        return (getValues() & (1L << line)) != 0;
+    }
+
+    /**
+     * Sets the values of output lines in one system call, so they change at the same moment.
+     *
+     * @param bits Values as bits, bit 0 is the first line of the request
+     * @param mask Lines to set, other lines keep their value
+     */
+    public void setValues(long bits, long mask) {
+        values.set(ValueLayout.JAVA_LONG, BITS, bits);
+        values.set(ValueLayout.JAVA_LONG, MASK, mask);
+        if (invokeIoctl(fd, GPIO_V2_LINE_SET_VALUES_IOCTL, values) < 0) {
+            throw new IllegalStateException("Failed to set line values, errno " + errno(valuesCallState));
+        }
+    }
+
+    /**
+     * @param line Index of the line in the request
+     * @param high True to set the line high
+     */
+    public void setValue(int line, boolean high) {
+        setValues(high ? 1L << line : 0, 1L << line);
+    }
+
+    /**
+     * Waits for edge events and reads the ones that are available, up to {@link #READ_CAPACITY}.
+     * They stay available through the getEvent methods until the next call.
+     *
+     * @param timeoutNanos Maximum time to wait, 0 to only read events that already happened, or -1 to wait forever
+     * @return Number of events read, 0 when the timeout expired first
+     */
+    public int readEvents(long timeoutNanos) {
+        eventCount = 0;
+        MemorySegment pollTimeout = MemorySegment.NULL;
+        if (timeoutNanos >= 0) {
+            timeout.set(ValueLayout.JAVA_LONG, 0, timeoutNanos / 1_000_000_000L);
+            timeout.set(ValueLayout.JAVA_LONG, 8, timeoutNanos % 1_000_000_000L);
+            pollTimeout = timeout;
+        }
+        try {
+            int ready = (int) libcPpoll.invokeExact(eventCallState, pollFd, 1L, pollTimeout, MemorySegment.NULL);
+            if (ready <= 0) {
+                if (ready < 0 && errno(eventCallState) != EINTR) {
+                    throw new IllegalStateException("Failed to wait for events, errno " + errno(eventCallState));
+                }
+                return 0;
+            }
+            long read = (long) libcRead.invokeExact(eventCallState, fd, events, events.byteSize());
+            if (read < 0) {
+                throw new IllegalStateException("Failed to read events, errno " + errno(eventCallState));
+            }
+            eventCount = (int) (read / EVENT_SIZE);
+            return eventCount;
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to read events", e);
+        }
+    }
+
+    /**
+     * Drops all events that already happened, e.g. before starting a new measurement.
+     */
+    public void discardEvents() {
+        while (readEvents(0) == READ_CAPACITY) {
+            // Keep reading until the kernel buffer is empty
+        }
+    }
+
+    /**
+     * @param event Index of the event in the last {@link #readEvents(long)}
+     * @return Time of the edge in nanoseconds on the CLOCK_MONOTONIC clock, comparable with {@link System#nanoTime()}
+     */
+    public long getEventTimestamp(int event) {
+        return events.get(ValueLayout.JAVA_LONG, event * EVENT_SIZE + EVENT_TIMESTAMP);
+    }
+
+    /**
+     * @param event Index of the event in the last {@link #readEvents(long)}
+     * @return {@link #EVENT_RISING_EDGE} or {@link #EVENT_FALLING_EDGE}
+     */
+    public int getEventId(int event) {
+        return events.get(ValueLayout.JAVA_INT, event * EVENT_SIZE + EVENT_ID);
+    }
+
+    /**
+     * @param event Index of the event in the last {@link #readEvents(long)}
+     * @return Offset of the line on the chip
+     */
+    public int getEventOffset(int event) {
+        return events.get(ValueLayout.JAVA_INT, event * EVENT_SIZE + EVENT_OFFSET);
+    }
+
+    /**
+     * @param event Index of the event in the last {@link #readEvents(long)}
+     * @return Sequence number of the event over all lines of the request, gaps mean events were dropped
+     */
+    public int getEventSeqno(int event) {
+        return events.get(ValueLayout.JAVA_INT, event * EVENT_SIZE + EVENT_SEQNO);
+    }
+
+    /**
+     * @param event Index of the event in the last {@link #readEvents(long)}
+     * @return Sequence number of the event on its line, gaps mean events were dropped
+     */
+    public int getEventLineSeqno(int event) {
+        return events.get(ValueLayout.JAVA_INT, event * EVENT_SIZE + EVENT_LINE_SEQNO);
+    }
+
+    /**
+     * Releases the lines and the native memory.
+     */
+    @Override
+    public void close() {
+        try {
+            closeFd(fd);
+        } finally {
+            arena.close();
+        }
+    }
+
+    private int invokeIoctl(int target, long request, MemorySegment argument) {
+        try {
+            return (int) libcIoctl.invokeExact(valuesCallState, target, request, argument);
+        } catch (Throwable e) {
+            throw new IllegalStateException("ioctl 0x" + Long.toHexString(request) + " failed", e);
+        }
+    }
+
+    private static void closeFd(int target) {
+        try {
+            if ((int) libcClose.invokeExact(target) != 0) {
+                System.err.println("Failed to close GPIO device");
+            }
+        } catch (Throwable e) {
+            System.err.println("Error while closing GPIO device: " + e.getMessage());
+        }
+    }
+
+    private static int errno(MemorySegment callState) {
+        return callState.get(ValueLayout.JAVA_INT, ERRNO);
+    }
+}
@@ -0,0 +1,177 @@
+package helper;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sequence of output changes with a deadline each, e.g. a blink pattern or a Morse message, and a player for it.
+ * <p>
+ * Sleeping between changes lets the timing drift, as every sleep wakes up a bit late, and printing or switching a
+ * pin takes time too. Here, a sequence is first compiled into primitive arrays of (pin, level, deadline), with the
+ * deadlines relative to the start. The player then waits for each absolute deadline: it parks until shortly before
+ * it, and spins for the last part, so an event is late by microseconds at most and the error never adds up.
+ * The lateness of every event is recorded in a {@link LatencyHistogram}.
+ */
+public class GpioSequence {
+
+    /**
+     * Park until this long before a deadline, then spin, as waking up from a park can take more than 100µs
+     */
+    private static final long SPIN_NANOS = 250_000;
+
+    private int[] pins = new int[64];
+    private boolean[] levels = new boolean[64];
+    private long[] deadlines = new long[64];
+    private int size = 0;
+    private long duration = 0;
+
+    /**
+     * Sets the output pins, called by the player on the thread that plays the sequence.
+     */
+    @FunctionalInterface
+    public interface Output {
+        /**
+         * @param pin  Pin as it was added to the sequence, e.g. a BCM number
+         * @param high True to set the pin high
+         */
+        void set(int pin, boolean high);
+    }
+
+    /**
+     * Adds an event, events must be added in the order of their deadlines.
+     *
+     * @param pin     Pin to change
+     * @param high    New level
+     * @param atNanos Deadline from the start of the sequence
+     * @return This sequence
+     */
+    public GpioSequence add(int pin, boolean high, long atNanos) {
+        if (size > 0 && atNanos < deadlines[size - 1]) {
+            throw new IllegalArgumentException("Events must be added in order, " + atNanos + " is before "
+                    + deadlines[size - 1]);
+        }
+        if (size == pins.length) {
+            pins = Arrays.copyOf(pins, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+            deadlines = Arrays.copyOf(deadlines, size * 2);
+        }
+        pins[size] = pin;
+        levels[size] = high;
+        deadlines[size] = atNanos;
+        size++;
+        duration = Math.max(duration, atNanos);
+        return this;
+    }
+
+    /**
+     * Appends a pause, so the next events start later.
+     *
+     * @param millis Pause in milliseconds
+     * @return This sequence
+     */
+    public GpioSequence pause(long millis) {
+        duration += millis * 1_000_000L;
+        return this;
+    }
+
+    /**
+     * Appends toggles of a pin, starting with high and ending low after the last interval.
+     *
+     * @param pin            Pin to toggle
+     * @param toggles        Number of toggles
+     * @param intervalMillis Time between two toggles
+     * @return This sequence
+     */
+    public GpioSequence blink(int pin, int toggles, long intervalMillis) {
+        long start = duration;
+        long interval = intervalMillis * 1_000_000L;
+        for (int i = 0; i < toggles; i++) {
+            add(pin, i % 2 == 0, start + i * interval);
+        }
+        return add(pin, false, start + toggles * interval);
+    }
+
+    /**
+     * Appends a message in Morse code: dot is 1 unit, dash is 3 units, the gap between the elements of a letter
+     * is 1 unit, between letters 3 units and between words 7 units.
+     *
+     * @param pin        Pin to switch
+     * @param code       Morse code with '.' and '-', ' ' between letters and '/' between words,
+     *                   e.g. <code>".... .. / .-- --- .-. .-.. -.."</code>
+     * @param unitMillis Length of one unit
+     * @return This sequence
+     */
+    public GpioSequence morse(int pin, String code, long unitMillis) {
+        long unit = unitMillis * 1_000_000L;
+        long time = duration;
+        // No gap before the first element
+        int gap = -1;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            switch (c) {
+                case '.', '-' -> {
+                    time += (gap < 0 ? 0 : Math.max(1, gap)) * unit;
+                    long length = (c == '.' ? 1 : 3) * unit;
+                    add(pin, true, time);
+                    add(pin, false, time + length);
+                    time += length;
+                    gap = 0;
+                }
+                case ' ' -> gap = Math.max(gap, 3);
+                case '/' -> gap = Math.max(gap, 7);
+                default -> throw new IllegalArgumentException("Not a Morse character: '" + c + "'");
+            }
+        }
+        // Keep the gap after the message, so a next message is separated from it
+        duration = time + Math.max(1, gap) * unit;
+        return this;
+    }
+
+    /**
+     * @return Number of events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Time from the start to the end of the sequence, including a trailing pause
+     */
+    public long getDurationNanos() {
+        return duration;
+    }
+
+    /**
+     * Plays the sequence on the calling thread and returns after its full duration.
+     *
+     * @param output Output to set the pins
+     * @param jitter Histogram to add the lateness of every event to, or null
+     * @throws InterruptedException When the thread is interrupted, the remaining events are not played
+     */
+    public void play(Output output, LatencyHistogram jitter) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            long deadline = start + deadlines[i];
+            waitUntil(deadline);
+            long lateness = System.nanoTime() - deadline;
+            output.set(pins[i], levels[i]);
+            if (jitter != null) {
+                jitter.record(lateness);
+            }
+        }
+        waitUntil(start + duration);
+    }
+
+    private static void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package helper;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations in nanoseconds with logarithmic buckets, to report latency and jitter percentiles
+ * without keeping every sample. Every power of two is split in 8 sub-buckets, so a percentile is accurate
+ * to about 12%. Recording a value doesn't allocate.
+ * <p>
+ * An instance is not thread-safe, it should be updated by one thread, e.g. the consumer of a {@link GpioEventRing}.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Adds a duration, negative durations are counted as 0.
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        total++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return Number of recorded durations
+     */
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @return Smallest recorded duration, 0 if there are none
+     */
+    public long getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    /**
+     * @return Largest recorded duration, 0 if there are none
+     */
+    public long getMax() {
+        return total == 0 ? 0 : max;
+    }
+
+    /**
+     * @return Average of the recorded durations, 0 if there are none
+     */
+    public double getMean() {
+        return total == 0 ? 0 : sum / (double) total;
+    }
+
+    /**
+     * @param percentile Percentile between 0 and 100, e.g. 99 or 99.9
+     * @return Upper bound of the bucket that contains the percentile, limited to the largest recorded duration
+     */
+    public long getPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, upperBoundOf(bucket));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Clears all recorded durations.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return One line summary in microseconds
+     */
+    public String summary() {
+        return String.format("%d samples, min %.1f µs, mean %.1f µs, p50 %.1f µs, p99 %.1f µs, p99.9 %.1f µs, max %.1f µs",
+                total, getMin() / 1000.0, getMean() / 1000.0, getPercentile(50) / 1000.0,
+                getPercentile(99) / 1000.0, getPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+
+    /**
+     * Values below 8 have their own bucket, larger values use the highest bit and the 3 bits below it
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,280 @@
+package helper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logic analyzer that records the transitions of input pins into a Value Change Dump (VCD) file, which can be
+ * opened with GTKWave or another waveform viewer, e.g. to check the wiring of a button or a distance sensor.
+ * <p>
+ * The pins are requested with edge events, so no transition is missed between two samples, and every transition
+ * has the timestamp the kernel took in its interrupt handler. A capture thread turns the events into the value of
+ * all pins as a bitmask, and stores (timestamp, bitmask) in a preallocated ring of primitive arrays, without
+ * allocating per transition. A writer thread streams the ring to the file, so a slow disk doesn't hold up the
+ * capture.
+ * <p>
+ * When the kernel or the ring drops transitions, they are counted, and the capture continues from the values the
+ * pins have at that moment.
+ */
+public class LogicCapture implements AutoCloseable {
+
+    private static final long POLL_NANOS = 100_000_000L;
+    private static final long WRITER_PARK_NANOS = 10_000_000L;
+
+    private final GpioLines lines;
+    private final int[] pins;
+    private final OutputStream out;
+    private final long startNanos;
+    private final Thread capture;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * Ring of transitions, head is only advanced by the capture thread, tail only by the writer thread
+     */
+    private final int mask;
+    private final long[] timestamps;
+    private final long[] values;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long transitions = 0;
+    private volatile long kernelDrops = 0;
+    private volatile long ringDrops = 0;
+    private volatile IOException writeError;
+
+    /**
+     * Reusable output buffer of the writer thread
+     */
+    private final byte[] line = new byte[32];
+
+    /**
+     * Starts capturing the pins, with pull-down and a ring for 64k transitions.
+     *
+     * @param chip GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param file VCD file to write
+     * @param pins BCM numbers of the pins
+     * @throws IOException When the file can't be created
+     */
+    public LogicCapture(String chip, Path file, int... pins) throws IOException {
+        this(chip, file, GpioLines.FLAG_BIAS_PULL_DOWN, 65_536, pins);
+    }
+
+    /**
+     * @param chip     GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param file     VCD file to write
+     * @param bias     {@link GpioLines#FLAG_BIAS_PULL_UP}, {@link GpioLines#FLAG_BIAS_PULL_DOWN} or 0 for none
+     * @param capacity Number of transitions the ring can hold, rounded up to a power of two
+     * @param pins     BCM numbers of the pins, at most {@link GpioLines#MAX_LINES}
+     * @throws IOException When the file can't be created
+     */
+    public LogicCapture(String chip, Path file, long bias, int capacity, int... pins) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.values = new long[size];
+        this.pins = pins.clone();
+
+        this.lines = new GpioLines(chip, "logic-capture",
+                GpioLines.FLAG_INPUT | GpioLines.FLAG_EDGE_BOTH | bias, 0, 1024, pins);
+        try {
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), 65_536);
+            this.startNanos = System.nanoTime();
+            long initial = lines.getValues();
+            writeHeader(initial);
+            this.capture = Thread.ofPlatform().name("logic-capture").daemon().start(() -> captureLoop(initial));
+            this.writer = Thread.ofPlatform().name("logic-capture-writer").daemon().start(() -> writeLoop(initial));
+        } catch (IOException | RuntimeException e) {
+            lines.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Number of captured transitions
+     */
+    public long getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return Number of transitions dropped by the kernel because its event buffer was full
+     */
+    public long getKernelDrops() {
+        return kernelDrops;
+    }
+
+    /**
+     * @return Number of transitions dropped because the writer fell behind and the ring was full
+     */
+    public long getRingDrops() {
+        return ringDrops;
+    }
+
+    /**
+     * Stops the capture, writes the remaining transitions and closes the file and the pins.
+     *
+     * @throws IOException When writing the file failed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            capture.join();
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lines.close();
+        try {
+            if (writeError == null) {
+                // End with the time of the stop, so the last values are shown with their duration
+                writeTime(System.nanoTime() - startNanos);
+            }
+            out.close();
+        } catch (IOException e) {
+            if (writeError == null) {
+                writeError = e;
+            }
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void captureLoop(long initial) {
+        long current = initial;
+        int lastSeqno = 0;
+        while (running) {
+            int events = lines.readEvents(POLL_NANOS);
+            long write = head.get();
+            long free = mask + 1 - (write - tail.getAcquire());
+            for (int i = 0; i < events; i++) {
+                int seqno = lines.getEventSeqno(i);
+                long bit = 1L << lines.indexOf(lines.getEventOffset(i));
+                if (lastSeqno != 0 && seqno - lastSeqno > 1) {
+                    kernelDrops += seqno - lastSeqno - 1;
+                    // The value of the other pins may have changed unnoticed, start again from their current value
+                    current = lines.getValues();
+                }
+                lastSeqno = seqno;
+                current = lines.getEventId(i) == GpioLines.EVENT_RISING_EDGE ? current | bit : current & ~bit;
+                if (free == 0) {
+                    ringDrops++;
+                    continue;
+                }
+                int slot = (int) write & mask;
+                timestamps[slot] = lines.getEventTimestamp(i);
+                values[slot] = current;
+                write++;
+                free--;
+            }
+            if (events > 0) {
+                transitions += events;
+                head.setRelease(write);
+            }
+        }
+    }
+
+    private void writeLoop(long initial) {
+        long previous = initial;
+        long lastTime = -1;
+        try {
+            while (true) {
+                // Check the capture thread first, so everything it captured before it stopped is written
+                boolean captureStopped = !running && !capture.isAlive();
+                long read = tail.get();
+                long available = head.getAcquire();
+                if (read == available) {
+                    if (captureStopped) {
+                        out.flush();
+                        return;
+                    }
+                    out.flush();
+                    LockSupport.parkNanos(WRITER_PARK_NANOS);
+                    continue;
+                }
+                for (; read < available; read++) {
+                    int slot = (int) read & mask;
+                    long value = values[slot];
+                    long changed = value ^ previous;
+                    if (changed == 0) {
+                        continue;
+                    }
+                    long time = Math.max(0, timestamps[slot] - startNanos);
+                    if (time != lastTime) {
+                        writeTime(time);
+                        lastTime = time;
+                    }
+                    for (int pin = 0; pin < pins.length; pin++) {
+                        if ((changed & (1L << pin)) != 0) {
+                            writeValue(pin, value);
+                        }
+                    }
+                    previous = value;
+                }
+                tail.setRelease(read);
+            }
+        } catch (IOException e) {
+            writeError = e;
+            // Keep the ring empty, so the capture continues until it is closed
+            while (running) {
+                tail.setRelease(head.getAcquire());
+                LockSupport.parkNanos(WRITER_PARK_NANOS);
+            }
+        }
+    }
+
+    private void writeHeader(long initial) throws IOException {
+        var header = new StringBuilder()
+                .append("$date ").append(LocalDateTime.now()).append(" $end\n")
+                .append("$version Pi4J LogicCapture $end\n")
+                .append("$timescale 1ns $end\n")
+                .append("$scope module gpio $end\n");
+        for (int pin = 0; pin < pins.length; pin++) {
+            header.append("$var wire 1 ").append(identifier(pin)).append(" BCM").append(pins[pin]).append(" $end\n");
+        }
+        header.append("$upscope $end\n")
+                .append("$enddefinitions $end\n")
+                .append("#0\n")
+                .append("$dumpvars\n");
+        for (int pin = 0; pin < pins.length; pin++) {
+            header.append((initial & (1L << pin)) != 0 ? '1' : '0').append(identifier(pin)).append('\n');
+        }
+        header.append("$end\n");
+        out.write(header.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes "#time", formatting the number into the reusable buffer
+     */
+    private void writeTime(long time) throws IOException {
+        int position = line.length;
+        line[--position] = '\n';
+        do {
+            line[--position] = (byte) ('0' + time % 10);
+            time /= 10;
+        } while (time > 0);
+        line[--position] = '#';
+        out.write(line, position, line.length - position);
+    }
+
+    private void writeValue(int pin, long value) throws IOException {
+        out.write((value & (1L << pin)) != 0 ? '1' : '0');
+        out.write(identifier(pin));
+        out.write('\n');
+    }
+
+    /**
+     * VCD identifiers are printable ASCII characters, starting at '!'
+     */
+    private static char identifier(int pin) {
+        return (char) ('!' + pin);
+    }
+}
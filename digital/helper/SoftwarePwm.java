@@ -0,0 +1,213 @@
+package helper;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Software PWM on many pins from one timing thread, e.g. to mix colors with RGB LEDs or dim a row of LEDs.
+ * <p>
+ * A thread per pin would wake up for every edge of every pin. Here, all pins are requested as one
+ * {@link GpioLines} request and switched on together at the start of every period, with one system call.
+ * The times at which pins switch off are sorted once, when the duty cycles are applied, and pins with the
+ * same duty cycle switch off together, so a period takes at most one write per distinct duty cycle.
+ * <p>
+ * Duty cycles are 8-bit values, 0 is off and 255 is on. They are set one by one and take effect together with
+ * {@link #apply()}, at the start of the next period, so a color never shows halfway through a change.
+ * <p>
+ * Java can't give the timing thread a real-time priority, so it parks until shortly before every edge and spins
+ * for the rest. A longer spin time gives less jitter, but more CPU use.
+ */
+public class SoftwarePwm implements AutoCloseable {
+
+    private final GpioLines lines;
+    private final long allMask;
+    private final long periodNanos;
+    private final long spinNanos;
+    private final LatencyHistogram jitter;
+    private final int[] duties;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile Schedule schedule;
+    private volatile long periods = 0;
+
+    /**
+     * Starts with all pins off, with a spin time of 50µs and without recording the jitter.
+     *
+     * @param chip        GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param frequencyHz Frequency of the PWM signal, e.g. 200Hz to avoid visible flicker
+     * @param pins        BCM numbers of the pins
+     */
+    public SoftwarePwm(String chip, int frequencyHz, int... pins) {
+        this(chip, frequencyHz, 50_000, null, pins);
+    }
+
+    /**
+     * Starts with all pins off.
+     *
+     * @param chip        GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param frequencyHz Frequency of the PWM signal
+     * @param spinNanos   Time to spin before every edge instead of parking
+     * @param jitter      Histogram to add the lateness of every edge to, which can be read after {@link #close()},
+     *                    or null
+     * @param pins        BCM numbers of the pins
+     */
+    public SoftwarePwm(String chip, int frequencyHz, long spinNanos, LatencyHistogram jitter, int... pins) {
+        this.periodNanos = 1_000_000_000L / frequencyHz;
+        this.spinNanos = spinNanos;
+        this.jitter = jitter;
+        this.duties = new int[pins.length];
+        this.allMask = pins.length == 64 ? -1L : (1L << pins.length) - 1;
+        this.schedule = compile(duties);
+        this.lines = GpioLines.output(chip, "software-pwm", pins);
+        this.thread = Thread.ofPlatform().name("software-pwm").daemon().priority(Thread.MAX_PRIORITY)
+                .start(this::run);
+    }
+
+    /**
+     * @return Number of pins
+     */
+    public int getPinCount() {
+        return duties.length;
+    }
+
+    /**
+     * Sets the duty cycle of a pin, which takes effect with the next {@link #apply()}.
+     *
+     * @param pin  Index of the pin, in the order of the constructor
+     * @param duty Duty cycle between 0 (off) and 255 (on)
+     */
+    public synchronized void setDuty(int pin, int duty) {
+        duties[pin] = Math.clamp(duty, 0, 255);
+    }
+
+    /**
+     * @param pin Index of the pin
+     * @return Duty cycle that was set last, which may not have been applied yet
+     */
+    public synchronized int getDuty(int pin) {
+        return duties[pin];
+    }
+
+    /**
+     * Sets the duty cycles of all pins and applies them.
+     *
+     * @param duties Duty cycle per pin between 0 (off) and 255 (on)
+     */
+    public synchronized void setDuties(int... duties) {
+        for (int pin = 0; pin < Math.min(duties.length, this.duties.length); pin++) {
+            setDuty(pin, duties[pin]);
+        }
+        apply();
+    }
+
+    /**
+     * Applies all changed duty cycles together, from the start of the next period.
+     */
+    public synchronized void apply() {
+        schedule = compile(duties);
+    }
+
+    /**
+     * @return Number of periods since the start
+     */
+    public long getPeriods() {
+        return periods;
+    }
+
+    /**
+     * Stops the timing thread, switches all pins off and releases them.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lines.setValues(0, allMask);
+        lines.close();
+    }
+
+    private void run() {
+        long periodStart = System.nanoTime();
+        long written = 0;
+        while (running) {
+            // The schedule is only read at the start of a period, so a change is applied to all pins at once
+            var current = schedule;
+            if (current.onMask != 0 || written != 0) {
+                edge(periodStart, current.onMask, allMask);
+            }
+            written = current.onMask;
+            for (int i = 0; i < current.offTimes.length; i++) {
+                waitUntil(periodStart + current.offTimes[i]);
+                edge(periodStart + current.offTimes[i], 0, current.offMasks[i]);
+            }
+            written &= ~current.offMask;
+            periods++;
+
+            periodStart += periodNanos;
+            long now = System.nanoTime();
+            if (now - periodStart > periodNanos) {
+                // Skip the missed periods instead of catching up with shortened ones
+                periodStart = now;
+            }
+            waitUntil(periodStart);
+        }
+    }
+
+    private void edge(long deadline, long bits, long mask) {
+        if (jitter != null) {
+            jitter.record(System.nanoTime() - deadline);
+        }
+        lines.setValues(bits, mask);
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Sorts the off edges by grouping the pins per duty cycle, which is a counting sort over the 256 values
+     */
+    private Schedule compile(int[] duties) {
+        long[] masksPerDuty = new long[256];
+        long onMask = 0;
+        for (int pin = 0; pin < duties.length; pin++) {
+            if (duties[pin] > 0) {
+                onMask |= 1L << pin;
+                masksPerDuty[duties[pin]] |= 1L << pin;
+            }
+        }
+        long[] offTimes = new long[duties.length];
+        long[] offMasks = new long[duties.length];
+        long offMask = 0;
+        int edges = 0;
+        for (int duty = 1; duty < 255; duty++) {
+            if (masksPerDuty[duty] != 0) {
+                offTimes[edges] = periodNanos * duty / 255;
+                offMasks[edges] = masksPerDuty[duty];
+                offMask |= masksPerDuty[duty];
+                edges++;
+            }
+        }
+        return new Schedule(onMask, offMask, Arrays.copyOf(offTimes, edges), Arrays.copyOf(offMasks, edges));
+    }
+
+    /**
+     * Compiled duty cycles, immutable so the timing thread can use it without locking
+     *
+     * @param onMask   Pins to switch on at the start of a period
+     * @param offMask  Pins that are switched off during the period, the others stay on
+     * @param offTimes Times from the start of the period to switch pins off, in ascending order
+     * @param offMasks Pins to switch off at each time
+     */
+    private record Schedule(long onMask, long offMask, long[] offTimes, long[] offMasks) {
+    }
+}
@@ -0,0 +1,260 @@
+package helper;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives several HC-SR04 ultrasonic sensors from one timing thread, so sensors don't pick up each other's echoes.
+ * <p>
+ * Sensors are fired in slots, one slot after the other. A slot ends as soon as the echoes of all its sensors have
+ * been received, or when the timeout expires, followed by a short guard time for the sound to fade out. Compared
+ * with giving every sensor a fixed 60ms, close objects are measured much faster. Sensors that can't hear each other,
+ * e.g. because they point in opposite directions, can share a slot to be fired together.
+ * <p>
+ * The trigger pins are requested as one {@link GpioLines} output request, the echo pins as one request with edge
+ * events, so all echoes are received through one file descriptor with kernel timestamps.
+ * <p>
+ * The latest reading of every sensor is published with a sequence lock: the timing thread never waits for readers,
+ * and readers retry in the rare case that a reading was updated while they were copying it.
+ */
+public class UltrasonicScheduler implements AutoCloseable {
+
+    private static final long TRIGGER_NANOS = 10_000;
+
+    private final int sensorCount;
+    private final int[][] slots;
+    private final GpioLines triggers;
+    private final GpioLines echoes;
+    private final long timeoutNanos;
+    private final long guardNanos;
+    private final long minIntervalNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * Latest reading per sensor, guarded by the sequence per sensor which is odd while it is being written
+     */
+    private final AtomicLongArray sequence;
+    private final long[] echoNanos;
+    private final long[] timestamps;
+    private final long[] measurements;
+    private final long[] missed;
+
+    /**
+     * State of the timing thread, the number of fired slots can be read by other threads
+     */
+    private final long[] lastTrigger;
+    private final long[] risingEdge;
+    private volatile long slotsFired = 0;
+
+    /**
+     * Creates a scheduler that fires every sensor in its own slot.
+     *
+     * @param chip            GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param triggerPins     BCM numbers of the trigger pins
+     * @param echoPins        BCM numbers of the echo pins, in the same order
+     * @param timeoutMillis   Maximum time to wait for an echo
+     * @param guardMillis     Time between the end of a slot and the start of the next one
+     */
+    public UltrasonicScheduler(String chip, int[] triggerPins, int[] echoPins, long timeoutMillis, long guardMillis) {
+        this(chip, triggerPins, echoPins, eachInOwnSlot(triggerPins.length), timeoutMillis, guardMillis, 60);
+    }
+
+    /**
+     * @param chip              GPIO chip device, e.g. {@link GpioLines#DEFAULT_CHIP}
+     * @param triggerPins       BCM numbers of the trigger pins
+     * @param echoPins          BCM numbers of the echo pins, in the same order
+     * @param slots             Sensor indexes per slot, every sensor must be in exactly one slot
+     * @param timeoutMillis     Maximum time to wait for an echo
+     * @param guardMillis       Time between the end of a slot and the start of the next one
+     * @param minIntervalMillis Minimum time between two triggers of the same sensor
+     */
+    public UltrasonicScheduler(String chip, int[] triggerPins, int[] echoPins, int[][] slots,
+                               long timeoutMillis, long guardMillis, long minIntervalMillis) {
+        if (triggerPins.length != echoPins.length) {
+            throw new IllegalArgumentException("Every sensor needs a trigger and an echo pin");
+        }
+        this.sensorCount = triggerPins.length;
+        this.slots = slots;
+        this.timeoutNanos = timeoutMillis * 1_000_000L;
+        this.guardNanos = guardMillis * 1_000_000L;
+        this.minIntervalNanos = minIntervalMillis * 1_000_000L;
+        this.sequence = new AtomicLongArray(sensorCount);
+        this.echoNanos = new long[sensorCount];
+        this.timestamps = new long[sensorCount];
+        this.measurements = new long[sensorCount];
+        this.missed = new long[sensorCount];
+        this.lastTrigger = new long[sensorCount];
+        this.risingEdge = new long[sensorCount];
+        Arrays.fill(lastTrigger, System.nanoTime() - minIntervalNanos);
+
+        this.triggers = GpioLines.output(chip, "ultrasonic-trigger", triggerPins);
+        try {
+            this.echoes = GpioLines.input(chip, "ultrasonic-echo",
+                    GpioLines.FLAG_EDGE_BOTH | GpioLines.FLAG_BIAS_PULL_UP, echoPins);
+        } catch (RuntimeException e) {
+            triggers.close();
+            throw e;
+        }
+        this.thread = Thread.ofPlatform().name("ultrasonic-scheduler").daemon().start(this::run);
+    }
+
+    /**
+     * @return Number of sensors
+     */
+    public int getSensorCount() {
+        return sensorCount;
+    }
+
+    /**
+     * @return Number of slots that have been fired
+     */
+    public long getSlotsFired() {
+        return slotsFired;
+    }
+
+    /**
+     * Gets the latest reading of a sensor, without blocking the timing thread.
+     *
+     * @param sensor Index of the sensor
+     * @return Latest reading, with a timestamp of 0 if there is none yet
+     */
+    public Reading getReading(int sensor) {
+        while (true) {
+            long before = sequence.getAcquire(sensor);
+            long echo = echoNanos[sensor];
+            long timestamp = timestamps[sensor];
+            long count = measurements[sensor];
+            long misses = missed[sensor];
+            VarHandle.loadLoadFence();
+            if ((before & 1) == 0 && sequence.getPlain(sensor) == before) {
+                return new Reading(timestamp, echo < 0 ? -1 : echo / 1_000_000_000.0 * 34300 / 2, count, misses);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stops the timing thread and releases the pins.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        triggers.close();
+        echoes.close();
+    }
+
+    private void run() {
+        while (running) {
+            for (int[] slot : slots) {
+                if (!running) {
+                    return;
+                }
+                fireSlot(slot);
+            }
+        }
+    }
+
+    /**
+     * Fires all sensors of a slot at once and waits for their echoes
+     */
+    private void fireSlot(int[] slot) {
+        // Respect the minimum interval of every sensor in the slot
+        long earliest = System.nanoTime();
+        long mask = 0;
+        for (int sensor : slot) {
+            earliest = Math.max(earliest, lastTrigger[sensor] + minIntervalNanos);
+            mask |= 1L << sensor;
+            risingEdge[sensor] = -1;
+        }
+        sleepUntil(earliest);
+
+        echoes.discardEvents();
+        triggers.setValues(mask, mask);
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TRIGGER_NANOS) {
+            // Busy wait, the pulse is too short to sleep
+        }
+        triggers.setValues(0, mask);
+        for (int sensor : slot) {
+            lastTrigger[sensor] = start;
+        }
+        slotsFired++;
+
+        int pending = slot.length;
+        long deadline = start + timeoutNanos;
+        long remaining;
+        while (pending > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+            int events = echoes.readEvents(remaining);
+            for (int i = 0; i < events; i++) {
+                int sensor = echoes.indexOf(echoes.getEventOffset(i));
+                if ((mask & (1L << sensor)) == 0) {
+                    continue;
+                }
+                long timestamp = echoes.getEventTimestamp(i);
+                if (echoes.getEventId(i) == GpioLines.EVENT_RISING_EDGE) {
+                    risingEdge[sensor] = timestamp;
+                } else if (risingEdge[sensor] >= 0) {
+                    publish(sensor, timestamp - risingEdge[sensor], timestamp);
+                    risingEdge[sensor] = Long.MIN_VALUE;
+                    pending--;
+                }
+            }
+        }
+        for (int sensor : slot) {
+            if (risingEdge[sensor] != Long.MIN_VALUE) {
+                publish(sensor, -1, System.nanoTime());
+            }
+        }
+        sleepUntil(System.nanoTime() + guardNanos);
+    }
+
+    /**
+     * Writes a reading with the sequence lock: odd while writing, even again when done
+     */
+    private void publish(int sensor, long echo, long timestamp) {
+        long current = sequence.getPlain(sensor);
+        sequence.setPlain(sensor, current + 1);
+        VarHandle.storeStoreFence();
+        echoNanos[sensor] = echo;
+        timestamps[sensor] = timestamp;
+        measurements[sensor]++;
+        if (echo < 0) {
+            missed[sensor]++;
+        }
+        sequence.setRelease(sensor, current + 2);
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static int[][] eachInOwnSlot(int sensors) {
+        int[][] slots = new int[sensors][];
+        for (int i = 0; i < sensors; i++) {
+            slots[i] = new int[]{i};
+        }
+        return slots;
+    }
+
+    /**
+     * Latest reading of a sensor
+     *
+     * @param timestampNanos {@link System#nanoTime()} of the end of the echo, or of the timeout
+     * @param distanceCm     Measured distance, -1 if no echo was received
+     * @param measurements   Number of measurements of this sensor
+     * @param missed         Number of measurements without an echo
+     */
+    public record Reading(long timestampNanos, double distanceCm, long measurements, long missed) {
+    }
+}
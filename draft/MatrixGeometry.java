@@ -0,0 +1,209 @@
+package draft;
+
+/**
+ * <p>
+ * Geometry of an RGB LED matrix that is built from one or more LED strips, e.g. an 8x8 matrix as found in the
+ * CrowPi 2, a 16x16 or 32x8 panel, or several panels chained together.
+ * </p>
+ * <p>
+ * Every (x, y) coordinate of the displayed image is mapped to the index of its LED on the strip once, when the
+ * geometry is created, so drawing only needs a table lookup. The mapping takes into account:
+ * </p>
+ * <ul>
+ *     <li>the wiring of every panel: progressive (every row starts at the same side) or serpentine (the
+ *     direction changes every row)</li>
+ *     <li>the corner of a panel where the first LED is</li>
+ *     <li>the rotation in which the panels are mounted</li>
+ *     <li>the number of chained panels, which are connected row by row, starting at the top left panel</li>
+ * </ul>
+ */
+public class MatrixGeometry {
+
+    /**
+     * The 8x8 matrix of the CrowPi 2, wired progressively from the top left LED
+     */
+    public static final MatrixGeometry CROWPI = new MatrixGeometry(8, 8);
+
+    private final int width;
+    private final int height;
+    private final int[] ledIndex;
+
+    /**
+     * Creates the geometry of a single panel that is wired progressively from the top left LED.
+     *
+     * @param width  Number of LEDs in a row
+     * @param height Number of rows
+     */
+    public MatrixGeometry(int width, int height) {
+        this(width, height, 1, 1, Wiring.PROGRESSIVE, Origin.TOP_LEFT, 0);
+    }
+
+    /**
+     * Creates the geometry of a single panel.
+     *
+     * @param width    Number of LEDs in a row of the panel
+     * @param height   Number of rows of the panel
+     * @param wiring   Wiring of the rows
+     * @param origin   Corner of the panel with the first LED
+     * @param rotation Clockwise rotation in degrees in which the panel is mounted: 0, 90, 180 or 270
+     */
+    public MatrixGeometry(int width, int height, Wiring wiring, Origin origin, int rotation) {
+        this(width, height, 1, 1, wiring, origin, rotation);
+    }
+
+    /**
+     * Creates the geometry of identical chained panels.
+     *
+     * @param panelWidth  Number of LEDs in a row of one panel
+     * @param panelHeight Number of rows of one panel
+     * @param panelsX     Number of panels next to each other
+     * @param panelsY     Number of panels below each other
+     * @param wiring      Wiring of the rows of every panel
+     * @param origin      Corner of every panel with its first LED
+     * @param rotation    Clockwise rotation in degrees in which the panels are mounted: 0, 90, 180 or 270
+     */
+    public MatrixGeometry(int panelWidth, int panelHeight, int panelsX, int panelsY,
+                          Wiring wiring, Origin origin, int rotation) {
+        if (panelWidth < 1 || panelHeight < 1 || panelsX < 1 || panelsY < 1) {
+            throw new IllegalArgumentException("Panel size and number of panels must be at least 1");
+        }
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("Rotation must be 0, 90, 180 or 270, got " + rotation);
+        }
+
+        int physicalWidth = panelWidth * panelsX;
+        int physicalHeight = panelHeight * panelsY;
+        boolean sideways = rotation == 90 || rotation == 270;
+        this.width = sideways ? physicalHeight : physicalWidth;
+        this.height = sideways ? physicalWidth : physicalHeight;
+        this.ledIndex = new int[width * height];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // Position on the mounted panels
+                int px = switch (rotation) {
+                    case 90 -> y;
+                    case 180 -> physicalWidth - 1 - x;
+                    case 270 -> physicalWidth - 1 - y;
+                    default -> x;
+                };
+                int py = switch (rotation) {
+                    case 90 -> physicalHeight - 1 - x;
+                    case 180 -> physicalHeight - 1 - y;
+                    case 270 -> x;
+                    default -> y;
+                };
+
+                // Position within the panel, counted from its first LED
+                int panel = (py / panelHeight) * panelsX + px / panelWidth;
+                int column = px % panelWidth;
+                int row = py % panelHeight;
+                if (origin == Origin.TOP_RIGHT || origin == Origin.BOTTOM_RIGHT) {
+                    column = panelWidth - 1 - column;
+                }
+                if (origin == Origin.BOTTOM_LEFT || origin == Origin.BOTTOM_RIGHT) {
+                    row = panelHeight - 1 - row;
+                }
+                if (wiring == Wiring.SERPENTINE && row % 2 == 1) {
+                    column = panelWidth - 1 - column;
+                }
+
+                ledIndex[y * width + x] = panel * panelWidth * panelHeight + row * panelWidth + column;
+            }
+        }
+    }
+
+    /**
+     * @return Width of the displayed image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the displayed image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Number of LEDs of all panels together
+     */
+    public int getLedCount() {
+        return ledIndex.length;
+    }
+
+    /**
+     * @param x X coordinate in the displayed image
+     * @param y Y coordinate in the displayed image
+     * @return True if the coordinate is within the matrix
+     */
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @param x X coordinate in the displayed image
+     * @param y Y coordinate in the displayed image
+     * @return Index of the LED on the strip
+     */
+    public int indexOf(int x, int y) {
+        return ledIndex[y * width + x];
+    }
+
+    /**
+     * @param pixel Index of a pixel in the displayed image, row by row
+     * @return Index of the LED on the strip
+     */
+    public int indexOf(int pixel) {
+        return ledIndex[pixel];
+    }
+
+    /**
+     * Parses a geometry from a command line argument, e.g. <code>16x16</code> or <code>32x8,serpentine,90</code>.
+     *
+     * @param value Width and height, optionally followed by the wiring, the origin and the rotation
+     * @return Parsed geometry
+     */
+    public static MatrixGeometry parse(String value) {
+        String[] parts = value.split(",");
+        String[] size = parts[0].toLowerCase().split("x");
+        Wiring wiring = Wiring.PROGRESSIVE;
+        Origin origin = Origin.TOP_LEFT;
+        int rotation = 0;
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i].trim().toUpperCase().replace('-', '_');
+            if (part.equals("PROGRESSIVE") || part.equals("SERPENTINE")) {
+                wiring = Wiring.valueOf(part);
+            } else if (part.chars().allMatch(Character::isDigit)) {
+                rotation = Integer.parseInt(part);
+            } else {
+                origin = Origin.valueOf(part);
+            }
+        }
+        return new MatrixGeometry(Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim()),
+                wiring, origin, rotation);
+    }
+
+    /**
+     * Wiring of the rows of a panel
+     */
+    public enum Wiring {
+        /**
+         * Every row starts at the same side
+         */
+        PROGRESSIVE,
+        /**
+         * Every next row continues at the side where the previous one ended
+         */
+        SERPENTINE
+    }
+
+    /**
+     * Corner of a panel with the first LED, as seen without rotation
+     */
+    public enum Origin {
+        TOP_LEFT, TOP_RIGHT, BOTTOM_LEFT, BOTTOM_RIGHT
+    }
+}
@@ -2,11 +2,17 @@ package draft; /// usr/bin/env jbang "$0" "$@" ; exit $?
 
 //DEPS org.slf4j:slf4j-api:2.0.17
 //DEPS org.slf4j:slf4j-simple:2.0.17
+//SOURCES MatrixGeometry.java
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.lang.foreign.*;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -24,173 +30,283 @@ import java.lang.invoke.VarHandle;
  * This example needs Java 22 or newer:<br/>
  * <code>jbang --javaopt='--enable-native-access=ALL-UNNAMED' draft.Pi4JFFMRgbLedMatrix.java</code>
  * </p>
+ * <p>
+ * Add <code>--pipelined</code> to run an animation on a separate render thread, which waits for the DMA
+ * transfer of the previous frame while the next frame is being drawn, and reports the achieved FPS.
+ * </p>
+ * <p>
+ * The library can drive a second strip on PWM channel 1 in the same render call, e.g. 30 LEDs on GPIO 13:<br/>
+ * <code>jbang --javaopt='--enable-native-access=ALL-UNNAMED' draft.Pi4JFFMRgbLedMatrix.java --channel1=13,30</code>
+ * </p>
+ * <p>
+ * Use <code>--geometry=</code> for another matrix size and wiring, e.g. <code>--geometry=32x8,serpentine</code>
+ * for a 32x8 panel, see {@link MatrixGeometry#parse(String)}.
+ * </p>
+ * <p>
+ * Add <code>--simulated</code> to use an in-memory backend instead of the library, which models the DMA
+ * transfer time, so the frame logic and the <code>--pipelined</code> benchmark also run without a Raspberry Pi.
+ * </p>
  */
 public class Pi4JFFMRgbLedMatrix {
 
     /**
      * WS281x configuration constants
      */
-    private static final int GPIO_PIN = 18;           // PWM GPIO pin
-    private static final int LED_COUNT = 64;          // 8x8 matrix
     private static final int LED_FREQ_HZ = 800000;    // LED signal frequency (800kHz)
     private static final int DMA_CHANNEL = 10;        // DMA channel to use for generating signal
-    private static final int LED_BRIGHTNESS = 255;    // LED brightness (0-255)
     private static final int LED_INVERT = 0;          // Signal line inversion (0 = normal, 1 = inverted)
-    private static final int STRIP_TYPE = 0x00081000; // WS2811_STRIP_GRB
 
     /**
-     * Width and height of the LED matrix
+     * Strip types, defining the color order of the LEDs
      */
-    private static final int WIDTH = 8;
-    private static final int HEIGHT = 8;
+    public static final int WS2811_STRIP_RGB = 0x00100800;
+    public static final int WS2811_STRIP_RBG = 0x00100008;
+    public static final int WS2811_STRIP_GRB = 0x00081000;
+    public static final int WS2811_STRIP_GBR = 0x00080010;
+    public static final int WS2811_STRIP_BRG = 0x00001008;
+    public static final int WS2811_STRIP_BGR = 0x00000810;
+
     /**
-     * Native library bindings
+     * Number of PWM channels the library can drive at the same time
      */
-    private static final Linker linker = Linker.nativeLinker();
-    private static final SymbolLookup stdlib = linker.defaultLookup();
-    // Function handles for rpi_ws281x library
-    private static final MethodHandle ws2811_init;
-    private static final MethodHandle ws2811_render;
-    private static final MethodHandle ws2811_fini;
-    // Memory layouts for ws2811 structures
+    public static final int CHANNELS = 2;
+
+    /**
+     * Default channel 0 configuration: the 8x8 matrix of the CrowPi 2 on PWM GPIO pin 18
+     */
+    public static final ChannelConfig MATRIX_CHANNEL = new ChannelConfig(18, MatrixGeometry.CROWPI.getLedCount(),
+            WS2811_STRIP_GRB);
+
+    // Memory layouts for ws2811 structures, as defined in ws2811.h
     private static final MemoryLayout ws2811_channel_t_layout = MemoryLayout.structLayout(
+            ValueLayout.JAVA_INT.withName("gpio"),       // GPIO pin
+            ValueLayout.JAVA_INT.withName("invert"),     // invert signal
             ValueLayout.JAVA_INT.withName("count"),      // LED count
-            ValueLayout.ADDRESS.withName("leds"),        // LED pixelblaze.data array
+            ValueLayout.JAVA_INT.withName("strip_type"), // strip type
+            ValueLayout.ADDRESS.withName("leds"),        // LED data array, allocated by ws2811_init
             ValueLayout.JAVA_BYTE.withName("brightness"), // brightness
-            ValueLayout.JAVA_BYTE.withName("invert"),    // invert signal
-            ValueLayout.JAVA_BYTE.withName("gpio"),      // GPIO pin
-            MemoryLayout.paddingLayout(1),               // padding
-            ValueLayout.JAVA_INT.withName("strip_type")  // strip type
+            ValueLayout.JAVA_BYTE.withName("wshift"),    // white shift
+            ValueLayout.JAVA_BYTE.withName("rshift"),    // red shift
+            ValueLayout.JAVA_BYTE.withName("gshift"),    // green shift
+            ValueLayout.JAVA_BYTE.withName("bshift"),    // blue shift
+            MemoryLayout.paddingLayout(3),               // padding
+            ValueLayout.ADDRESS.withName("gamma")        // gamma correction table
     );
     private static final MemoryLayout ws2811_t_layout = MemoryLayout.structLayout(
-            ValueLayout.JAVA_LONG.withName("freq"),      // frequency
+            ValueLayout.JAVA_LONG.withName("render_wait_time"), // time before the next render can run
+            ValueLayout.ADDRESS.withName("device"),      // device handle
+            ValueLayout.ADDRESS.withName("rpi_hw"),      // Raspberry Pi hardware info
+            ValueLayout.JAVA_INT.withName("freq"),       // frequency
             ValueLayout.JAVA_INT.withName("dmanum"),     // DMA number
             ws2811_channel_t_layout.withName("channel0"), // channel 0
-            ws2811_channel_t_layout.withName("channel1"), // channel 1
-            ValueLayout.ADDRESS.withName("device")        // device handle
+            ws2811_channel_t_layout.withName("channel1")  // channel 1
     );
-    // VarHandles for struct field access
+    // VarHandles for struct field access, the channel handles are indexed by channel number
     private static final VarHandle FREQ_HANDLE = ws2811_t_layout.varHandle(
             MemoryLayout.PathElement.groupElement("freq"));
     private static final VarHandle DMANUM_HANDLE = ws2811_t_layout.varHandle(
             MemoryLayout.PathElement.groupElement("dmanum"));
-    private static final VarHandle CH0_COUNT_HANDLE = ws2811_t_layout.varHandle(
-            MemoryLayout.PathElement.groupElement("channel0"),
-            MemoryLayout.PathElement.groupElement("count"));
-    private static final VarHandle CH0_LEDS_HANDLE = ws2811_t_layout.varHandle(
-            MemoryLayout.PathElement.groupElement("channel0"),
-            MemoryLayout.PathElement.groupElement("leds"));
-    private static final VarHandle CH0_BRIGHTNESS_HANDLE = ws2811_t_layout.varHandle(
-            MemoryLayout.PathElement.groupElement("channel0"),
-            MemoryLayout.PathElement.groupElement("brightness"));
-    private static final VarHandle CH0_GPIO_HANDLE = ws2811_t_layout.varHandle(
-            MemoryLayout.PathElement.groupElement("channel0"),
-            MemoryLayout.PathElement.groupElement("gpio"));
-    private static final VarHandle CH0_STRIP_TYPE_HANDLE = ws2811_t_layout.varHandle(
-            MemoryLayout.PathElement.groupElement("channel0"),
-            MemoryLayout.PathElement.groupElement("strip_type"));
-
-    static {
-        try {
-            // Try different possible library locations
-            SymbolLookup libws281x = null;
-            String[] libraryPaths = {
-                    "libws2811.so.1",     // System-wide installation
-                    "libws2811.so",       // Symlink
-                    "/usr/local/lib/libws2811.so.1",  // Direct path
-                    "./libws2811.so.1"    // Local build directory
-            };
-
-            RuntimeException lastException = null;
-            for (String path : libraryPaths) {
-                try {
-                    libws281x = SymbolLookup.libraryLookup(path, Arena.global());
-                    System.out.println("Successfully loaded library from: " + path);
-                    break;
-                } catch (Exception e) {
-                    lastException = new RuntimeException("Failed to load from " + path, e);
-                }
-            }
-
-            if (libws281x == null) {
-                throw new RuntimeException("Could not load rpi_ws281x library from any location. " +
-                        "Make sure it's built and installed. Last error: " +
-                        (lastException != null ? lastException.getMessage() : "unknown"));
-            }
-
-            // Create method handles for native functions
-            ws2811_init = linker.downcallHandle(
-                    libws281x.find("ws2811_init").orElseThrow(),
-                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)
-            );
-
-            ws2811_render = linker.downcallHandle(
-                    libws281x.find("ws2811_render").orElseThrow(),
-                    FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)
-            );
-
-            ws2811_fini = linker.downcallHandle(
-                    libws281x.find("ws2811_fini").orElseThrow(),
-                    FunctionDescriptor.ofVoid(ValueLayout.ADDRESS)
-            );
-
-        } catch (Throwable e) {
-            throw new RuntimeException("Failed to load rpi_ws281x library. " +
-                    "Make sure to build and install it from source: " +
-                    "https://github.com/jgarff/rpi_ws281x", e);
-        }
-    }
+    private static final VarHandle[] CH_COUNT_HANDLE = channelHandles("count");
+    private static final VarHandle[] CH_LEDS_HANDLE = channelHandles("leds");
+    private static final VarHandle[] CH_BRIGHTNESS_HANDLE = channelHandles("brightness");
+    private static final VarHandle[] CH_GPIO_HANDLE = channelHandles("gpio");
+    private static final VarHandle[] CH_INVERT_HANDLE = channelHandles("invert");
+    private static final VarHandle[] CH_STRIP_TYPE_HANDLE = channelHandles("strip_type");
 
     /**
-     * RGB color buffer for the matrix (3 bytes per LED: R, G, B)
+     * Configuration of both channels, an unused channel has zero LEDs
      */
-    private final Color[][] colorBuffer;
+    private final ChannelConfig[] channels;
+    /**
+     * Packed RGB (0x00RRGGBB) buffer per channel in strip order, as set by the user before gamma correction.
+     * The matrix is stored in the first LEDs of channel 0, in the order given by its geometry.
+     */
+    private final int[][] pixels = new int[CHANNELS][];
+    /**
+     * Geometry of the matrix, mapping coordinates to LEDs of channel 0
+     */
+    private final MatrixGeometry geometry;
+    private final int width;
+    private final int height;
+    /**
+     * Reused image for drawing with {@link Graphics2D}, and the buffer its pixels are read into, row by row
+     */
+    private final BufferedImage canvas;
+    private final int[] imagePixels;
     // Native memory segments
+    private final LedBackend backend;
     private final MemorySegment ws2811_struct;
-    private final MemorySegment led_data;
+    private final MemorySegment[] driver_led_data = new MemorySegment[CHANNELS];
     private final Arena arena;
+    /**
+     * LED data per channel that is written by the set and fill operations, in pipelined mode the back buffers
+     */
+    private final MemorySegment[] led_data = new MemorySegment[CHANNELS];
+    /**
+     * Pipelined mode: two frame segments per channel, the render thread and its hand-over
+     */
+    private final boolean pipelined;
+    private final MemorySegment[][] frames = new MemorySegment[CHANNELS][2];
+    private int backFrame = 0;
+    private Thread renderThread;
+    private final Semaphore frameReady = new Semaphore(0);
+    private final Semaphore renderIdle = new Semaphore(1);
+    private volatile boolean running = true;
+    private volatile boolean closed = false;
+    /**
+     * Render statistics, only updated by the thread that renders
+     */
+    private long renderedFrames = 0;
+    private long renderNanos = 0;
+    private long waitNanos = 0;
+    private long firstFrameNanos = 0;
+    private long lastFrameNanos = 0;
     /**
      * Default brightness (0.0 to 1.0)
      */
     private double brightness = 0.1;
+    /**
+     * Gamma correction table, applied when a pixel is written to the native LED data, or null for none.
+     * Brightness is not applied in Java, the library scales every color with the brightness byte of the
+     * channel while converting the LED data for the DMA transfer.
+     */
+    private byte[] gammaTable = null;
 
     /**
-     * Creates a new RGB LED matrix component with a custom GPIO pin.
+     * Creates a new RGB LED matrix component that renders on the calling thread.
      */
     public Pi4JFFMRgbLedMatrix() {
-        this.colorBuffer = new Color[HEIGHT][WIDTH];
-        this.arena = Arena.ofConfined();
+        this(false);
+    }
 
-        // Initialize color buffer
-        clear();
+    /**
+     * Creates a new RGB LED matrix component on channel 0, channel 1 is unused.
+     *
+     * @param pipelined True to render on a separate thread with two frame buffers, so the next frame
+     *                  can be drawn while the current one is being sent over DMA
+     */
+    public Pi4JFFMRgbLedMatrix(boolean pipelined) {
+        this(new NativeBackend(), MatrixGeometry.CROWPI, MATRIX_CHANNEL, null, pipelined);
+    }
+
+    /**
+     * Creates a new RGB LED matrix component on channel 0, with an optional second strip on channel 1.
+     * Both channels are sent in parallel with every render.
+     *
+     * @param backend   Driver that sends the LED data, {@link NativeBackend} for the real LEDs
+     * @param geometry  Size and wiring of the matrix on channel 0
+     * @param channel0  Configuration of channel 0, with at least as many LEDs as the matrix
+     * @param channel1  Configuration of channel 1, or null when unused
+     * @param pipelined True to render on a separate thread with two frame buffers, so the next frame
+     *                  can be drawn while the current one is being sent over DMA
+     */
+    public Pi4JFFMRgbLedMatrix(LedBackend backend, MatrixGeometry geometry, ChannelConfig channel0,
+                               ChannelConfig channel1, boolean pipelined) {
+        if (channel0.ledCount() < geometry.getLedCount()) {
+            throw new IllegalArgumentException("Channel 0 needs at least " + geometry.getLedCount() + " LEDs for the matrix");
+        }
+        this.geometry = geometry;
+        this.width = geometry.getWidth();
+        this.height = geometry.getHeight();
+        this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.imagePixels = new int[width * height];
+        this.channels = new ChannelConfig[]{channel0, channel1 != null ? channel1 : ChannelConfig.UNUSED};
+        this.backend = backend;
+        this.pipelined = pipelined;
+        // Shared, as the render thread accesses the native memory in pipelined mode
+        this.arena = Arena.ofShared();
 
-        // Allocate native memory for ws2811 structure and LED pixelblaze.data
+        // Allocate native memory for ws2811 structure, the LED data is allocated by ws2811_init
         this.ws2811_struct = arena.allocate(ws2811_t_layout);
-        this.led_data = arena.allocateFrom(ValueLayout.JAVA_INT, new int[LED_COUNT]);
 
         // Initialize ws2811 structure
         initializeWS2811Struct();
 
-        // Initialize the library
-        try {
-            int result = (int) ws2811_init.invoke(ws2811_struct);
-            if (result != 0) {
-                throw new RuntimeException("ws2811_init failed with code: " + result +
-                        ". Make sure to run as root or configure proper permissions.");
+        // Initialize the backend, which allocates the LED data of each channel
+        int result = backend.init(ws2811_struct);
+        if (result != 0) {
+            arena.close();
+            throw new RuntimeException("ws2811_init failed with code: " + result +
+                    ". Make sure to run as root or configure proper permissions.");
+        }
+
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            int ledCount = channels[channel].ledCount();
+            pixels[channel] = new int[ledCount];
+            if (ledCount == 0) {
+                continue;
             }
-            System.out.println("Successfully initialized rpi_ws281x library");
-        } catch (Throwable e) {
-            throw new RuntimeException("Failed to initialize ws2811", e);
+
+            // Pixels are written straight into the LED data of the library, which renders it without extra copies
+            long ledDataSize = ledCount * ValueLayout.JAVA_INT.byteSize();
+            driver_led_data[channel] = ((MemorySegment) CH_LEDS_HANDLE[channel].get(ws2811_struct, 0L))
+                    .reinterpret(ledDataSize);
+            led_data[channel] = driver_led_data[channel];
+
+            if (pipelined) {
+                // Two frames, the channel points to the one being rendered while the other one is drawn
+                frames[channel][0] = arena.allocate(ledDataSize, ValueLayout.JAVA_INT.byteAlignment());
+                frames[channel][1] = arena.allocate(ledDataSize, ValueLayout.JAVA_INT.byteAlignment());
+                led_data[channel] = frames[channel][backFrame];
+            }
+        }
+
+        if (pipelined) {
+            this.renderThread = Thread.ofPlatform().name("ws281x-render").daemon().start(this::renderLoop);
+        }
+
+        // Initialize frame buffers and LED data
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            clearChannel(channel);
         }
     }
 
     public static void main(String[] args) {
+        boolean pipelined = false;
+        LedBackend backend = null;
+        MatrixGeometry geometry = MatrixGeometry.CROWPI;
+        ChannelConfig channel1 = null;
+        for (String arg : args) {
+            if (arg.equals("--pipelined")) {
+                pipelined = true;
+            } else if (arg.equals("--simulated")) {
+                backend = new SimulatedBackend();
+            } else if (arg.startsWith("--geometry=")) {
+                geometry = MatrixGeometry.parse(arg.substring("--geometry=".length()));
+            } else if (arg.startsWith("--channel1=")) {
+                String[] gpioAndCount = arg.substring("--channel1=".length()).split(",");
+                channel1 = new ChannelConfig(Integer.parseInt(gpioAndCount[0]), Integer.parseInt(gpioAndCount[1]),
+                        WS2811_STRIP_GRB);
+            }
+        }
+
         // Create the RGB LED Matrix with try-with-resources for proper cleanup
-        var matrix = new Pi4JFFMRgbLedMatrix();
+        var matrix = new Pi4JFFMRgbLedMatrix(backend != null ? backend : new NativeBackend(), geometry,
+                new ChannelConfig(MATRIX_CHANNEL.gpio(), geometry.getLedCount(), MATRIX_CHANNEL.stripType()),
+                channel1, pipelined);
 
         Runtime.getRuntime().addShutdownHook(new Thread(matrix::close));
 
         try {
+            if (pipelined) {
+                // Animate a moving rainbow as fast as possible, drawing while the previous frame is sent
+                System.out.println("Running pipelined rainbow animation...");
+                int[] rainbow = new int[matrix.getWidth() * matrix.getHeight()];
+                for (int frame = 0; frame < 2000; frame++) {
+                    for (int i = 0; i < rainbow.length; i++) {
+                        rainbow[i] = Color.HSBtoRGB(((i + frame) % rainbow.length) / (float) rainbow.length, 1.0f, 1.0f);
+                    }
+                    matrix.setPixels(rainbow);
+                    if (channel1 != null) {
+                        matrix.fillChannel(1, rainbow[0]);
+                    }
+                    matrix.refresh();
+                }
+                matrix.close();
+                System.out.println(matrix.getStatistics());
+                return;
+            }
+
             // Display something on the LED Matrix
             matrix.fill(Color.RED);
             matrix.refresh();
@@ -207,12 +323,29 @@ public class Pi4JFFMRgbLedMatrix {
             System.out.println("Set one pixel green...");
             sleep(1000);
 
+            if (channel1 != null) {
+                // Both strips are updated by the same render call
+                matrix.fillChannel(1, 0xFF8000);
+                matrix.refresh();
+                System.out.println("Filling the strip on channel 1 with orange...");
+                sleep(1000);
+            }
+
             // Test brightness control
             matrix.setBrightness(0.5);
             matrix.fill(Color.WHITE);
             matrix.refresh();
             System.out.println("Testing brightness at 50%...");
             sleep(2000);
+
+            // Gamma correction makes the lower half of a gradient darker, as the eye sees it
+            matrix.setGamma(2.2);
+            matrix.draw(g -> {
+                g.setPaint(new GradientPaint(0, 0, Color.BLACK, matrix.getWidth(), 0, Color.WHITE));
+                g.fillRect(0, 0, matrix.getWidth(), matrix.getHeight());
+            });
+            System.out.println("Testing gamma correction on a gradient...");
+            sleep(2000);
         } finally {
             matrix.close();
         }
@@ -234,19 +367,81 @@ public class Pi4JFFMRgbLedMatrix {
         }
     }
 
+    /**
+     * Creates the VarHandles of a field in the struct of each channel
+     */
+    private static VarHandle[] channelHandles(String field) {
+        var handles = new VarHandle[CHANNELS];
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            handles[channel] = ws2811_t_layout.varHandle(
+                    MemoryLayout.PathElement.groupElement("channel" + channel),
+                    MemoryLayout.PathElement.groupElement(field));
+        }
+        return handles;
+    }
+
+    /**
+     * Converts a brightness (0.0 to 1.0) to the brightness byte of a channel (0 to 255)
+     */
+    private static byte brightnessByte(double brightness) {
+        return (byte) Math.round(brightness * 255);
+    }
+
     private void initializeWS2811Struct() {
         // Set frequency
-        FREQ_HANDLE.set(ws2811_struct, (long) LED_FREQ_HZ);
+        FREQ_HANDLE.set(ws2811_struct, 0L, LED_FREQ_HZ);
 
         // Set DMA channel
-        DMANUM_HANDLE.set(ws2811_struct, DMA_CHANNEL);
+        DMANUM_HANDLE.set(ws2811_struct, 0L, DMA_CHANNEL);
+
+        // Configure the channels, the library skips a channel with zero LEDs
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            var config = channels[channel];
+            CH_COUNT_HANDLE[channel].set(ws2811_struct, 0L, config.ledCount());
+            CH_BRIGHTNESS_HANDLE[channel].set(ws2811_struct, 0L, brightnessByte(brightness));
+            CH_GPIO_HANDLE[channel].set(ws2811_struct, 0L, config.gpio());
+            CH_INVERT_HANDLE[channel].set(ws2811_struct, 0L, LED_INVERT);
+            CH_STRIP_TYPE_HANDLE[channel].set(ws2811_struct, 0L, config.stripType());
+        }
+    }
+
+    /**
+     * Writes a LED to the native LED data as 0x00RRGGBB, gamma corrected if a gamma table is set.
+     * The library applies the brightness and converts it to the color order of the strip type while rendering.
+     */
+    private void writeLed(int channel, int index, int rgb) {
+        var gamma = gammaTable;
+        if (gamma != null) {
+            rgb = (gamma[(rgb >> 16) & 0xFF] & 0xFF) << 16
+                    | (gamma[(rgb >> 8) & 0xFF] & 0xFF) << 8
+                    | (gamma[rgb & 0xFF] & 0xFF);
+        }
+        led_data[channel].setAtIndex(ValueLayout.JAVA_INT, index, rgb);
+    }
 
-        // Configure channel 0
-        CH0_COUNT_HANDLE.set(ws2811_struct, LED_COUNT);
-        CH0_LEDS_HANDLE.set(ws2811_struct, led_data);
-        CH0_BRIGHTNESS_HANDLE.set(ws2811_struct, (byte) LED_BRIGHTNESS);
-        CH0_GPIO_HANDLE.set(ws2811_struct, (byte) GPIO_PIN);
-        CH0_STRIP_TYPE_HANDLE.set(ws2811_struct, STRIP_TYPE);
+    /**
+     * Rewrites the native LED data of all channels from the pixel buffers
+     */
+    private void rewriteLeds() {
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            for (int i = 0; i < pixels[channel].length; i++) {
+                writeLed(channel, i, pixels[channel][i]);
+            }
+        }
+    }
+
+    /**
+     * @return Width of the matrix
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the matrix
+     */
+    public int getHeight() {
+        return height;
     }
 
     /**
@@ -259,61 +454,176 @@ public class Pi4JFFMRgbLedMatrix {
     }
 
     /**
-     * Sets the brightness of the matrix (0.0 to 1.0)
+     * Sets the brightness of the matrix and the strip on channel 1 (0.0 to 1.0)
      * Note: Be careful with high brightness values as they can draw significant current
      *
      * @param brightness Brightness level (0.0 = off, 1.0 = full brightness)
      */
     public void setBrightness(double brightness) {
         this.brightness = Math.max(0.0, Math.min(1.0, brightness));
+
+        // Only the brightness byte of the channels changes, the LED data stays as it is
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            CH_BRIGHTNESS_HANDLE[channel].set(ws2811_struct, 0L, brightnessByte(this.brightness));
+        }
+    }
+
+    /**
+     * Sets the gamma correction of all pixels, to make fades look linear to the eye. This is done in Java
+     * with a lookup table while writing the pixels, the default of 1.0 disables it.
+     *
+     * @param gamma Gamma exponent, e.g. 2.2, or 1.0 for none
+     */
+    public void setGamma(double gamma) {
+        if (gamma <= 0) {
+            throw new IllegalArgumentException("Gamma must be positive, got " + gamma);
+        }
+        if (gamma == 1.0) {
+            gammaTable = null;
+        } else {
+            var table = new byte[256];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) Math.round(Math.pow(i / 255.0, gamma) * 255);
+            }
+            gammaTable = table;
+        }
+        rewriteLeds();
+    }
+
+    /**
+     * Gets the number of LEDs of a channel
+     *
+     * @param channel Channel number (0 or 1)
+     * @return Number of LEDs, zero for an unused channel
+     */
+    public int getLedCount(int channel) {
+        return pixels[channel].length;
+    }
+
+    /**
+     * Sets a single LED of a channel, e.g. of the strip on channel 1
+     *
+     * @param channel Channel number (0 or 1)
+     * @param index   LED index on the strip
+     * @param rgb     Packed RGB color (0x00RRGGBB), the alpha byte is ignored
+     */
+    public void setLed(int channel, int index, int rgb) {
+        if (index >= 0 && index < pixels[channel].length) {
+            pixels[channel][index] = rgb & 0xFFFFFF;
+            writeLed(channel, index, pixels[channel][index]);
+        }
+    }
+
+    /**
+     * Sets all LEDs of a channel to a single color
+     *
+     * @param channel Channel number (0 or 1)
+     * @param rgb     Packed RGB color (0x00RRGGBB) to fill the channel with
+     */
+    public void fillChannel(int channel, int rgb) {
+        Arrays.fill(pixels[channel], rgb & 0xFFFFFF);
+        for (int i = 0; i < pixels[channel].length; i++) {
+            writeLed(channel, i, pixels[channel][i]);
+        }
+    }
+
+    /**
+     * Turns off all LEDs of a channel
+     *
+     * @param channel Channel number (0 or 1)
+     */
+    public void clearChannel(int channel) {
+        Arrays.fill(pixels[channel], 0x000000);
+        if (led_data[channel] != null) {
+            led_data[channel].fill((byte) 0);
+        }
+    }
+
+    /**
+     * Sets a pixel to a specific color
+     *
+     * @param x   X coordinate (0 to width - 1)
+     * @param y   Y coordinate (0 to height - 1)
+     * @param rgb Packed RGB color (0x00RRGGBB), the alpha byte is ignored
+     */
+    public void setPixel(int x, int y, int rgb) {
+        if (geometry.contains(x, y)) {
+            setLed(0, geometry.indexOf(x, y), rgb);
+        }
     }
 
     /**
      * Sets a pixel to a specific color
      *
-     * @param x     X coordinate (0-7)
-     * @param y     Y coordinate (0-7)
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
      * @param color Color to set
      */
     public void setPixel(int x, int y, Color color) {
-        if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
-            colorBuffer[y][x] = color;
-        }
+        setPixel(x, y, color.getRGB());
     }
 
     /**
      * Sets a pixel to on or off (for monochrome compatibility)
      *
-     * @param x     X coordinate (0-7)
-     * @param y     Y coordinate (0-7)
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
      * @param state true for on (white), false for off (black)
      */
     public void setPixel(int x, int y, boolean state) {
-        setPixel(x, y, state ? Color.WHITE : Color.BLACK);
+        setPixel(x, y, state ? 0xFFFFFF : 0x000000);
+    }
+
+    /**
+     * Sets all pixels of the matrix at once
+     *
+     * @param rgb Packed RGB colors (0x00RRGGBB), row by row, with a length of at least width * height
+     */
+    public void setPixels(int[] rgb) {
+        if (rgb.length < imagePixels.length) {
+            throw new IllegalArgumentException("Expected " + imagePixels.length + " pixels, got " + rgb.length);
+        }
+        for (int i = 0; i < imagePixels.length; i++) {
+            int led = geometry.indexOf(i);
+            pixels[0][led] = rgb[i] & 0xFFFFFF;
+            writeLed(0, led, pixels[0][led]);
+        }
     }
 
     /**
      * Gets the color of a specific pixel
      *
-     * @param x X coordinate (0-7)
-     * @param y Y coordinate (0-7)
-     * @return Color of the pixel
+     * @param x X coordinate (0 to width - 1)
+     * @param y Y coordinate (0 to height - 1)
+     * @return Packed RGB color (0x00RRGGBB) of the pixel
      */
-    public Color getPixel(int x, int y) {
-        if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
-            return colorBuffer[y][x];
+    public int getPixel(int x, int y) {
+        if (geometry.contains(x, y)) {
+            return pixels[0][geometry.indexOf(x, y)];
         }
-        return Color.BLACK;
+        return 0x000000;
     }
 
     /**
      * Clears the entire matrix (all pixels off)
      */
     public void clear() {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                colorBuffer[y][x] = Color.BLACK;
-            }
+        // The matrix uses all LEDs from the start of the channel, only their order differs
+        int ledCount = geometry.getLedCount();
+        Arrays.fill(pixels[0], 0, ledCount, 0x000000);
+        led_data[0].asSlice(0, ledCount * ValueLayout.JAVA_INT.byteSize()).fill((byte) 0);
+    }
+
+    /**
+     * Sets the entire matrix to a single color
+     *
+     * @param rgb Packed RGB color (0x00RRGGBB) to fill the matrix with
+     */
+    public void fill(int rgb) {
+        int ledCount = geometry.getLedCount();
+        Arrays.fill(pixels[0], 0, ledCount, rgb & 0xFFFFFF);
+        for (int i = 0; i < ledCount; i++) {
+            writeLed(0, i, pixels[0][i]);
         }
     }
 
@@ -323,91 +633,428 @@ public class Pi4JFFMRgbLedMatrix {
      * @param color Color to fill the matrix with
      */
     public void fill(Color color) {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                colorBuffer[y][x] = color;
-            }
-        }
+        fill(color.getRGB());
     }
 
     /**
-     * Refreshes the display by sending the current buffer to the LED matrix
-     * This converts the RGB buffer to WS2812B format and sends it via PWM
+     * Drawing support for RGB images
      */
-    public void refresh() {
-        // Convert color buffer to WS2812B pixelblaze.data format
-        byte[] ledData = new byte[WIDTH * HEIGHT * 3]; // 3 bytes per LED (GRB format for WS2812B)
-
-        int dataIndex = 0;
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                Color pixel = colorBuffer[y][x];
-
-                // Apply brightness scaling
-                int red = (int) (pixel.getRed() * brightness);
-                int green = (int) (pixel.getGreen() * brightness);
-                int blue = (int) (pixel.getBlue() * brightness);
-
-                // WS2812B expects GRB format
-                ledData[dataIndex++] = (byte) green;
-                ledData[dataIndex++] = (byte) red;
-                ledData[dataIndex++] = (byte) blue;
-            }
-        }
-
-        // Send pixelblaze.data to LEDs via PWM (this is a simplified approach)
-        // In a real implementation, you'd need to convert to proper WS2812B timing
-        sendWS2812BData(ledData);
+    public void draw(Consumer<Graphics2D> drawer) {
+        final var graphics = canvas.createGraphics();
+        graphics.setBackground(Color.BLACK);
+        graphics.clearRect(0, 0, width, height);
+        drawer.accept(graphics);
+        graphics.dispose();
+        draw(canvas);
     }
 
     /**
-     * Sends WS2812B pixelblaze.data using the rpi_ws281x native library
-     * This provides precise timing control for WS2812B LEDs
+     * Copies the image into the frame buffer and refreshes the display. Images of type
+     * {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB} are read
+     * straight from their raster.
      *
-     * @param data RGB pixelblaze.data in GRB format
+     * @param image Image of exactly width x height pixels
      */
-    private void sendWS2812BData(byte[] data) {
-        try {
-            // Convert byte array to 32-bit integers (WS2812B format: 0x00GGRRBB)
-            int[] ledValues = new int[LED_COUNT];
+    public void draw(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Image must be exactly " + width + "x" + height + " pixels");
+        }
+
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, 0, width, height, imagePixels);
+        } else {
+            image.getRGB(0, 0, width, height, imagePixels, 0, width);
+        }
+        setPixels(imagePixels);
+        refresh();
+    }
 
-            for (int i = 0; i < Math.min(data.length / 3, LED_COUNT); i++) {
-                int dataIndex = i * 3;
+    /**
+     * Refreshes the display by rendering the native LED data of both channels, which is already up-to-date
+     * as every set and fill operation writes into it directly.
+     * <p>
+     * In pipelined mode, the frame is handed over to the render thread and this method returns as soon as
+     * the previous frame has been rendered, so the next frame can be drawn during the DMA transfer.
+     */
+    public void refresh() {
+        if (!pipelined) {
+            render();
+            return;
+        }
 
-                // Extract GRB values (pixelblaze.data is already in GRB format)
-                int green = data[dataIndex] & 0xFF;
-                int red = data[dataIndex + 1] & 0xFF;
-                int blue = data[dataIndex + 2] & 0xFF;
+        try {
+            renderIdle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
 
-                // Combine into 32-bit value: 0x00GGRRBB
-                ledValues[i] = (green << 16) | (red << 8) | blue;
+        // The render thread is done with the other frames, continue drawing on a copy of these ones
+        int front = backFrame;
+        backFrame = 1 - backFrame;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            if (led_data[channel] == null) {
+                continue;
             }
+            var frontFrame = frames[channel][front];
+            MemorySegment.copy(frontFrame, 0, frames[channel][backFrame], 0, frontFrame.byteSize());
+            led_data[channel] = frames[channel][backFrame];
+            CH_LEDS_HANDLE[channel].set(ws2811_struct, 0L, frontFrame);
+        }
+        frameReady.release();
+    }
 
-            // Copy pixelblaze.data to native memory
-            MemorySegment.copy(ledValues, 0, led_data, ValueLayout.JAVA_INT, 0, ledValues.length);
+    /**
+     * Gets the render statistics. In pipelined mode, call this after the last {@link #refresh()} has
+     * been rendered, e.g. after {@link #close()}, for exact numbers.
+     *
+     * @return Statistics of the frames rendered so far
+     */
+    public RenderStatistics getStatistics() {
+        double seconds = (lastFrameNanos - firstFrameNanos) / 1_000_000_000.0;
+        return new RenderStatistics(renderedFrames,
+                renderedFrames > 1 && seconds > 0 ? (renderedFrames - 1) / seconds : 0,
+                renderedFrames > 0 ? renderNanos / 1000.0 / renderedFrames : 0,
+                renderedFrames > 0 ? waitNanos / 1000.0 / renderedFrames : 0);
+    }
 
-            // Render the LED pixelblaze.data
-            int result = (int) ws2811_render.invoke(ws2811_struct);
+    /**
+     * Waits until the DMA transfer of the previous frame is finished, and starts rendering the current one.
+     */
+    private void render() {
+        try {
+            long start = System.nanoTime();
+            int result = backend.waitForRender(ws2811_struct);
+            long waited = System.nanoTime();
+            if (result == 0) {
+                result = backend.render(ws2811_struct);
+            }
+            long rendered = System.nanoTime();
             if (result != 0) {
                 System.err.println("ws2811_render failed with code: " + result);
             }
 
+            if (renderedFrames == 0) {
+                firstFrameNanos = rendered;
+            }
+            lastFrameNanos = rendered;
+            renderedFrames++;
+            waitNanos += waited - start;
+            renderNanos += rendered - waited;
         } catch (Throwable e) {
-            System.err.println("Failed to send WS2812B pixelblaze.data: " + e.getMessage());
+            System.err.println("Failed to render WS2812B data: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Render thread of the pipelined mode, renders every frame that is handed over by {@link #refresh()}
+     */
+    private void renderLoop() {
+        while (running) {
+            try {
+                frameReady.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (running) {
+                render();
+            }
+            renderIdle.release();
+        }
+    }
+
     /**
      * Cleanup native resources
      */
     public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         try {
-            ws2811_fini.invoke(ws2811_struct);
+            if (pipelined) {
+                // Let the last frame be rendered, then stop the render thread
+                renderIdle.acquire();
+                running = false;
+                frameReady.release();
+                renderThread.join();
+            }
+            backend.waitForRender(ws2811_struct);
+            // The library frees the LED data it allocated itself
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                if (driver_led_data[channel] != null) {
+                    CH_LEDS_HANDLE[channel].set(ws2811_struct, 0L, driver_led_data[channel]);
+                }
+            }
+            backend.fini(ws2811_struct);
             arena.close();
             System.out.println("Successfully cleaned up rpi_ws281x resources");
         } catch (Throwable e) {
             System.err.println("Error during cleanup: " + e.getMessage());
         }
     }
+
+    /**
+     * Driver that sends the LED data of the channels configured in a <code>ws2811_t</code> struct,
+     * with the same contract as the functions of the rpi_ws281x library.
+     */
+    public interface LedBackend {
+        /**
+         * Initializes the driver and allocates the LED data of every channel with a LED count.
+         *
+         * @param ws2811 Configured <code>ws2811_t</code> struct, the <code>leds</code> pointers are set on return
+         * @return 0 on success, a <code>ws2811_return_t</code> error code otherwise
+         */
+        int init(MemorySegment ws2811);
+
+        /**
+         * Waits for the previous transfer and starts sending the current LED data of all channels.
+         *
+         * @param ws2811 Initialized <code>ws2811_t</code> struct
+         * @return 0 on success, a <code>ws2811_return_t</code> error code otherwise
+         */
+        int render(MemorySegment ws2811);
+
+        /**
+         * Waits until the transfer started by the last {@link #render(MemorySegment)} is finished.
+         *
+         * @param ws2811 Initialized <code>ws2811_t</code> struct
+         * @return 0 on success, a <code>ws2811_return_t</code> error code otherwise
+         */
+        int waitForRender(MemorySegment ws2811);
+
+        /**
+         * Stops the driver and frees the LED data allocated by {@link #init(MemorySegment)}.
+         *
+         * @param ws2811 Initialized <code>ws2811_t</code> struct
+         */
+        void fini(MemorySegment ws2811);
+    }
+
+    /**
+     * Backend that calls the rpi_ws281x library. The library is only loaded when the first instance
+     * is created, so the matrix code can be used with another backend on systems without it.
+     */
+    public static class NativeBackend implements LedBackend {
+
+        private static final Linker linker = Linker.nativeLinker();
+        // Function handles for rpi_ws281x library
+        private static final MethodHandle ws2811_init;
+        private static final MethodHandle ws2811_render;
+        private static final MethodHandle ws2811_wait;
+        private static final MethodHandle ws2811_fini;
+
+        static {
+            try {
+                // Try different possible library locations
+                SymbolLookup libws281x = null;
+                String[] libraryPaths = {
+                        "libws2811.so.1",     // System-wide installation
+                        "libws2811.so",       // Symlink
+                        "/usr/local/lib/libws2811.so.1",  // Direct path
+                        "./libws2811.so.1"    // Local build directory
+                };
+
+                RuntimeException lastException = null;
+                for (String path : libraryPaths) {
+                    try {
+                        libws281x = SymbolLookup.libraryLookup(path, Arena.global());
+                        System.out.println("Successfully loaded library from: " + path);
+                        break;
+                    } catch (Exception e) {
+                        lastException = new RuntimeException("Failed to load from " + path, e);
+                    }
+                }
+
+                if (libws281x == null) {
+                    throw new RuntimeException("Could not load rpi_ws281x library from any location. " +
+                            "Make sure it's built and installed. Last error: " +
+                            (lastException != null ? lastException.getMessage() : "unknown"));
+                }
+
+                // Create method handles for native functions
+                ws2811_init = linker.downcallHandle(
+                        libws281x.find("ws2811_init").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)
+                );
+
+                ws2811_render = linker.downcallHandle(
+                        libws281x.find("ws2811_render").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)
+                );
+
+                ws2811_wait = linker.downcallHandle(
+                        libws281x.find("ws2811_wait").orElseThrow(),
+                        FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS)
+                );
+
+                ws2811_fini = linker.downcallHandle(
+                        libws281x.find("ws2811_fini").orElseThrow(),
+                        FunctionDescriptor.ofVoid(ValueLayout.ADDRESS)
+                );
+
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to load rpi_ws281x library. " +
+                        "Make sure to build and install it from source: " +
+                        "https://github.com/jgarff/rpi_ws281x", e);
+            }
+        }
+
+        @Override
+        public int init(MemorySegment ws2811) {
+            try {
+                int result = (int) ws2811_init.invoke(ws2811);
+                if (result == 0) {
+                    System.out.println("Successfully initialized rpi_ws281x library");
+                }
+                return result;
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to initialize ws2811", e);
+            }
+        }
+
+        @Override
+        public int render(MemorySegment ws2811) {
+            try {
+                return (int) ws2811_render.invoke(ws2811);
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to invoke ws2811_render", e);
+            }
+        }
+
+        @Override
+        public int waitForRender(MemorySegment ws2811) {
+            try {
+                return (int) ws2811_wait.invoke(ws2811);
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to invoke ws2811_wait", e);
+            }
+        }
+
+        @Override
+        public void fini(MemorySegment ws2811) {
+            try {
+                ws2811_fini.invoke(ws2811);
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to invoke ws2811_fini", e);
+            }
+        }
+    }
+
+    /**
+     * In-memory stand-in for the rpi_ws281x library, to run and benchmark the matrix code without
+     * a Raspberry Pi. Every render keeps a copy of the LED data as the LEDs would show it, with the
+     * channel brightness applied, and blocks the next render or wait for the time the DMA transfer
+     * of the longest channel would take: 24 bits of 1.25 µs per LED plus the reset time.
+     */
+    public static class SimulatedBackend implements LedBackend {
+
+        private static final long NANOS_PER_LED = 24 * 1250;
+        private static final long RESET_NANOS = 50_000;
+
+        private final int[][] shown = new int[CHANNELS][];
+        private Arena arena;
+        private long transferEnd = 0;
+        private long renders = 0;
+
+        @Override
+        public int init(MemorySegment ws2811) {
+            arena = Arena.ofShared();
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                int count = (int) CH_COUNT_HANDLE[channel].get(ws2811, 0L);
+                shown[channel] = new int[count];
+                CH_LEDS_HANDLE[channel].set(ws2811, 0L, count > 0
+                        ? arena.allocate(count * ValueLayout.JAVA_INT.byteSize(), ValueLayout.JAVA_INT.byteAlignment())
+                        : MemorySegment.NULL);
+            }
+            return 0;
+        }
+
+        @Override
+        public int render(MemorySegment ws2811) {
+            waitForRender(ws2811);
+            long longestTransfer = 0;
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                int count = shown[channel].length;
+                if (count == 0) {
+                    continue;
+                }
+                // Brightness is applied the same way as the library does while converting the LED data
+                int scale = ((byte) CH_BRIGHTNESS_HANDLE[channel].get(ws2811, 0L) & 0xFF) + 1;
+                var leds = ((MemorySegment) CH_LEDS_HANDLE[channel].get(ws2811, 0L))
+                        .reinterpret(count * ValueLayout.JAVA_INT.byteSize());
+                for (int i = 0; i < count; i++) {
+                    int rgb = leds.getAtIndex(ValueLayout.JAVA_INT, i);
+                    shown[channel][i] = ((((rgb >> 16) & 0xFF) * scale) >> 8) << 16
+                            | ((((rgb >> 8) & 0xFF) * scale) >> 8) << 8
+                            | (((rgb & 0xFF) * scale) >> 8);
+                }
+                longestTransfer = Math.max(longestTransfer, count * NANOS_PER_LED);
+            }
+            transferEnd = System.nanoTime() + longestTransfer + RESET_NANOS;
+            renders++;
+            return 0;
+        }
+
+        @Override
+        public int waitForRender(MemorySegment ws2811) {
+            long remaining;
+            while ((remaining = transferEnd - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+            return 0;
+        }
+
+        @Override
+        public void fini(MemorySegment ws2811) {
+            waitForRender(ws2811);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                CH_LEDS_HANDLE[channel].set(ws2811, 0L, MemorySegment.NULL);
+            }
+            arena.close();
+        }
+
+        /**
+         * @param channel Channel number (0 or 1)
+         * @return Colors (0x00RRGGBB) the LEDs of the channel show after the last render
+         */
+        public int[] getShown(int channel) {
+            return shown[channel];
+        }
+
+        /**
+         * @return Number of renders since init
+         */
+        public long getRenders() {
+            return renders;
+        }
+    }
+
+    /**
+     * Configuration of one PWM channel of the library
+     *
+     * @param gpio      GPIO pin with a PWM function for this channel, e.g. 12 or 18 for channel 0, 13 or 19 for channel 1
+     * @param ledCount  Number of LEDs on the strip, zero for an unused channel
+     * @param stripType Color order of the strip, one of the WS2811_STRIP_* constants
+     */
+    public record ChannelConfig(int gpio, int ledCount, int stripType) {
+        public static final ChannelConfig UNUSED = new ChannelConfig(0, 0, WS2811_STRIP_GRB);
+    }
+
+    /**
+     * Render statistics
+     *
+     * @param frames              Number of rendered frames
+     * @param fps                 Achieved frames per second
+     * @param averageRenderMicros Average time in µs of ws2811_render, converting the frame and starting the DMA
+     * @param averageWaitMicros   Average time in µs waiting for the DMA transfer of the previous frame
+     */
+    public record RenderStatistics(long frames, double fps, double averageRenderMicros, double averageWaitMicros) {
+        @Override
+        public String toString() {
+            return String.format("%d frames at %.1f FPS, render %.1f µs, DMA wait %.1f µs per frame",
+                    frames, fps, averageRenderMicros, averageWaitMicros);
+        }
+    }
 }
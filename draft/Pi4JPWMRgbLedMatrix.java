@@ -4,6 +4,7 @@ package draft; /// usr/bin/env jbang "$0" "$@" ; exit $?
 //DEPS org.slf4j:slf4j-simple:2.0.17
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-linuxfs:4.0.0
+//SOURCES MatrixGeometry.java
 
 import com.pi4j.Pi4J;
 import com.pi4j.context.Context;
@@ -13,6 +14,7 @@ import com.pi4j.plugin.linuxfs.provider.pwm.LinuxFsPwmProviderImpl;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
@@ -26,6 +28,11 @@ import java.util.function.Consumer;
  * So this is just a placeholder implementation, hoping to find a better approach in the future.
  * </p>
  * <p>
+ * Pulses of 400 and 800 ns can't be timed with <code>pwm.on</code> and <code>Thread.sleep</code>. See
+ * {@link Pi4JSpiRgbLedMatrix} for a pure Java driver that lets the SPI controller generate the timing,
+ * or {@link Pi4JFFMRgbLedMatrix} for the native rpi_ws281x library.
+ * </p>
+ * <p>
  * Add the following to `/boot/firmware/config.txt`, e.g. on Raspberry Pi 5 for a CrowPi 2:<br/>
  * <code>dtoverlay=pwm-2chan,pin=18,func=2,pin2=12,func2=4</code><br/>
  * See <a href="https://www.pi4j.com/documentation/io-examples/pwm/#raspberry-pi-5">the Pi4J PWM documentation</a> for more details.
@@ -43,26 +50,31 @@ public class Pi4JPWMRgbLedMatrix {
     private static final int CHANNEL = 0;
 
     /**
-     * Width and height of the LED matrix
+     * PWM frequency for WS2812B timing (800kHz)
      */
-    private static final int WIDTH = 8;
-    private static final int HEIGHT = 8;
-    private static final int TOTAL_LEDS = WIDTH * HEIGHT;
+    private static final int PWM_FREQUENCY = 800000;
 
     /**
-     * PWM frequency for WS2812B timing (800kHz)
+     * Size and wiring of the matrix
      */
-    private static final int PWM_FREQUENCY = 800000;
+    private final MatrixGeometry geometry;
+    private final int width;
+    private final int height;
 
     /**
-     * RGB color buffer for the matrix (3 bytes per LED: R, G, B)
+     * Packed RGB (0x00RRGGBB) frame buffer for the matrix, row by row
      */
-    private final Color[][] colorBuffer;
+    private final int[] pixels;
 
     /**
-     * Monochrome buffer for compatibility with existing matrix symbols
+     * WS2812B data, 3 bytes per LED in GRB order, reused for every refresh
      */
-    private final boolean[][] monoBuffer;
+    private final byte[] ledData;
+
+    /**
+     * Reused image for drawing with {@link Graphics2D}
+     */
+    private final BufferedImage canvas;
 
     /**
      * Pi4J PWM instance for controlling WS2812B LEDs
@@ -74,17 +86,33 @@ public class Pi4JPWMRgbLedMatrix {
      */
     private double brightness = 0.1; // Start dim to avoid power issues
 
+    /**
+     * Brightness as a fixed-point factor (0 to 256)
+     */
+    private int brightnessScale = (int) Math.round(brightness * 256);
+
     /**
      * Creates a new RGB LED matrix component with a custom GPIO pin.
      *
      * @param pi4j Pi4J context
      */
     public Pi4JPWMRgbLedMatrix(Context pi4j) {
-        this.colorBuffer = new Color[HEIGHT][WIDTH];
-        this.monoBuffer = new boolean[HEIGHT][WIDTH];
+        this(pi4j, MatrixGeometry.CROWPI);
+    }
 
-        // Initialize buffers
-        clear();
+    /**
+     * Creates a new RGB LED matrix component with the given size and wiring.
+     *
+     * @param pi4j     Pi4J context
+     * @param geometry Size and wiring of the matrix
+     */
+    public Pi4JPWMRgbLedMatrix(Context pi4j, MatrixGeometry geometry) {
+        this.geometry = geometry;
+        this.width = geometry.getWidth();
+        this.height = geometry.getHeight();
+        this.pixels = new int[width * height];
+        this.ledData = new byte[geometry.getLedCount() * 3];
+        this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
         // Create PWM configuration for WS2812B
         // Note: WS2812B requires precise timing that's difficult with Pi4J PWM
@@ -111,11 +139,12 @@ public class Pi4JPWMRgbLedMatrix {
     public static void main(String[] args) {
         // Initialize the Pi4J context
         var pi4j = Pi4J.newContextBuilder()
-                .add(new LinuxFsPwmProviderImpl("/sys/class/pwm/", 0))
+                .add(new LinuxFsPwmProviderImpl("/sys/class/pwm/"))
                 .build();
 
         // Initialize the RGB LED Matrix
-        var matrix = new Pi4JPWMRgbLedMatrix(pi4j);
+        var geometry = args.length > 0 ? MatrixGeometry.parse(args[0]) : MatrixGeometry.CROWPI;
+        var matrix = new Pi4JPWMRgbLedMatrix(pi4j, geometry);
 
         // Display something on the LED Matrix
         matrix.fill(Color.RED);
@@ -170,57 +199,97 @@ public class Pi4JPWMRgbLedMatrix {
      */
     public void setBrightness(double brightness) {
         this.brightness = Math.max(0.0, Math.min(1.0, brightness));
+        this.brightnessScale = (int) Math.round(this.brightness * 256);
+    }
+
+    /**
+     * Sets a pixel to a specific color
+     *
+     * @param x   X coordinate (0 to width - 1)
+     * @param y   Y coordinate (0 to height - 1)
+     * @param rgb Packed RGB color (0x00RRGGBB), the alpha byte is ignored
+     */
+    public void setPixel(int x, int y, int rgb) {
+        if (geometry.contains(x, y)) {
+            pixels[y * width + x] = rgb & 0xFFFFFF;
+        }
     }
 
     /**
      * Sets a pixel to a specific color
      *
-     * @param x     X coordinate (0-7)
-     * @param y     Y coordinate (0-7)
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
      * @param color Color to set
      */
     public void setPixel(int x, int y, Color color) {
-        if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
-            colorBuffer[y][x] = color;
-            monoBuffer[y][x] = !color.equals(Color.BLACK);
-        }
+        setPixel(x, y, color.getRGB());
     }
 
     /**
      * Sets a pixel to on or off (for monochrome compatibility)
      *
-     * @param x     X coordinate (0-7)
-     * @param y     Y coordinate (0-7)
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
      * @param state true for on (white), false for off (black)
      */
     public void setPixel(int x, int y, boolean state) {
-        setPixel(x, y, state ? Color.WHITE : Color.BLACK);
+        setPixel(x, y, state ? 0xFFFFFF : 0x000000);
+    }
+
+    /**
+     * Sets all pixels at once
+     *
+     * @param rgb Packed RGB colors (0x00RRGGBB), row by row, with a length of at least width * height
+     */
+    public void setPixels(int[] rgb) {
+        if (rgb.length < pixels.length) {
+            throw new IllegalArgumentException("Expected " + pixels.length + " pixels, got " + rgb.length);
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = rgb[i] & 0xFFFFFF;
+        }
     }
 
     /**
      * Gets the color of a specific pixel
      *
-     * @param x X coordinate (0-7)
-     * @param y Y coordinate (0-7)
-     * @return Color of the pixel
+     * @param x X coordinate (0 to width - 1)
+     * @param y Y coordinate (0 to height - 1)
+     * @return Packed RGB color (0x00RRGGBB) of the pixel
      */
-    public Color getPixel(int x, int y) {
-        if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
-            return colorBuffer[y][x];
+    public int getPixel(int x, int y) {
+        if (geometry.contains(x, y)) {
+            return pixels[y * width + x];
         }
-        return Color.BLACK;
+        return 0x000000;
+    }
+
+    /**
+     * Checks if a pixel is on (for monochrome compatibility)
+     *
+     * @param x X coordinate (0 to width - 1)
+     * @param y Y coordinate (0 to height - 1)
+     * @return true if the pixel is not black
+     */
+    public boolean isPixelOn(int x, int y) {
+        return getPixel(x, y) != 0x000000;
     }
 
     /**
      * Clears the entire matrix (all pixels off)
      */
     public void clear() {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                colorBuffer[y][x] = Color.BLACK;
-                monoBuffer[y][x] = false;
-            }
-        }
+        Arrays.fill(pixels, 0x000000);
+    }
+
+    /**
+     * Sets the entire matrix to a single color
+     *
+     * @param rgb Packed RGB color (0x00RRGGBB) to fill the matrix with
+     */
+    public void fill(int rgb) {
+        Arrays.fill(pixels, rgb & 0xFFFFFF);
     }
 
     /**
@@ -229,12 +298,7 @@ public class Pi4JPWMRgbLedMatrix {
      * @param color Color to fill the matrix with
      */
     public void fill(Color color) {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                colorBuffer[y][x] = color;
-                monoBuffer[y][x] = !color.equals(Color.BLACK);
-            }
-        }
+        fill(color.getRGB());
     }
 
     /**
@@ -242,24 +306,20 @@ public class Pi4JPWMRgbLedMatrix {
      * This converts the RGB buffer to WS2812B format and sends it via PWM
      */
     public void refresh() {
-        // Convert color buffer to WS2812B pixelblaze.data format
-        byte[] ledData = new byte[TOTAL_LEDS * 3]; // 3 bytes per LED (GRB format for WS2812B)
-
-        int dataIndex = 0;
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                Color pixel = colorBuffer[y][x];
-
-                // Apply brightness scaling
-                int red = (int) (pixel.getRed() * brightness);
-                int green = (int) (pixel.getGreen() * brightness);
-                int blue = (int) (pixel.getBlue() * brightness);
-
-                // WS2812B expects GRB format
-                ledData[dataIndex++] = (byte) green;
-                ledData[dataIndex++] = (byte) red;
-                ledData[dataIndex++] = (byte) blue;
-            }
+        // Convert frame buffer to WS2812B data format, 3 bytes per LED (GRB format for WS2812B) in strip order
+        for (int i = 0; i < pixels.length; i++) {
+            int rgb = pixels[i];
+            int dataIndex = geometry.indexOf(i) * 3;
+
+            // Apply brightness scaling
+            int red = (((rgb >> 16) & 0xFF) * brightnessScale) >> 8;
+            int green = (((rgb >> 8) & 0xFF) * brightnessScale) >> 8;
+            int blue = ((rgb & 0xFF) * brightnessScale) >> 8;
+
+            // WS2812B expects GRB format
+            ledData[dataIndex++] = (byte) green;
+            ledData[dataIndex++] = (byte) red;
+            ledData[dataIndex++] = (byte) blue;
         }
 
         // Send pixelblaze.data to LEDs via PWM (this is a simplified approach)
@@ -321,38 +381,36 @@ public class Pi4JPWMRgbLedMatrix {
         }
     }
 
-    /**
-     * Updates the monochrome buffer based on the color buffer
-     */
-    private void updateMonoBuffer() {
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                monoBuffer[y][x] = !colorBuffer[y][x].equals(Color.BLACK);
-            }
-        }
-    }
-
     /**
      * Drawing support for RGB images
      */
     public void draw(Consumer<Graphics2D> drawer) {
-        final var image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
-        final var graphics = image.createGraphics();
+        final var graphics = canvas.createGraphics();
+        graphics.setBackground(Color.BLACK);
+        graphics.clearRect(0, 0, width, height);
         drawer.accept(graphics);
-        draw(image);
+        graphics.dispose();
+        draw(canvas);
     }
 
+    /**
+     * Copies the image into the frame buffer and refreshes the display. Images of type
+     * {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB} are read
+     * straight from their raster.
+     *
+     * @param image Image of exactly width x height pixels
+     */
     public void draw(BufferedImage image) {
-        if (image.getWidth() != WIDTH || image.getHeight() != HEIGHT) {
-            throw new IllegalArgumentException("Image must be exactly " + WIDTH + "x" + HEIGHT + " pixels");
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Image must be exactly " + width + "x" + height + " pixels");
         }
 
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                Color pixelColor = new Color(image.getRGB(x, y));
-                setPixel(x, y, pixelColor);
-            }
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, 0, width, height, pixels);
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
         }
+        setPixels(pixels);
         refresh();
     }
 }
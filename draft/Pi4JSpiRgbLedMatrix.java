@@ -0,0 +1,404 @@
+package draft; /// usr/bin/env jbang "$0" "$@" ; exit $?
+
+//DEPS org.slf4j:slf4j-api:2.0.17
+//DEPS org.slf4j:slf4j-simple:2.0.17
+//DEPS com.pi4j:pi4j-core:4.0.0
+//DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
+//SOURCES MatrixGeometry.java
+
+import com.pi4j.Pi4J;
+import com.pi4j.context.Context;
+import com.pi4j.io.spi.Spi;
+import com.pi4j.io.spi.SpiBus;
+import com.pi4j.io.spi.SpiChipSelect;
+import com.pi4j.io.spi.SpiMode;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Example code to control an 8x8 RGB LED Matrix with WS2812B LEDs via SPI, in pure Java without native code or root.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * </p>
+ * <p>
+ * The WS2812B protocol needs pulses of 400 ns (0-bit) or 800 ns (1-bit) within a period of 1.25 µs, which can't
+ * be timed from Java. Instead, every data bit is encoded as a 3-bit SPI symbol at 2.4 MHz, so each SPI bit
+ * takes 417 ns: <code>100</code> for a 0-bit and <code>110</code> for a 1-bit. The SPI controller then
+ * generates the exact timing. A whole frame, followed by the low reset gap, is sent in one SPI transfer.
+ * </p>
+ * <p>
+ * The data input of the LEDs must be connected to SPI MOSI (BCM 10), which is not the pin of the matrix in
+ * the CrowPi 2. Enable SPI in <code>/boot/firmware/config.txt</code> with <code>dtparam=spi=on</code>.
+ * On a Raspberry Pi 3 or 4, the SPI clock is derived from the core clock, so also fix it with
+ * <code>core_freq=250</code> (Pi 3) or <code>core_freq_min=500</code> (Pi 4).
+ * </p>
+ * <p>
+ * This example can be executed without sudo:<br/>
+ * <code>jbang draft.Pi4JSpiRgbLedMatrix.java</code><br/>
+ * For another matrix size or wiring, pass its geometry, e.g. <code>16x16,serpentine</code>.
+ * </p>
+ * <p>
+ * A frame takes 9 SPI bytes per LED plus the reset gap, and spidev only accepts transfers up to its buffer size of
+ * 4096 bytes by default, which is about 445 LEDs. The frame can't be split over several transfers, as the LEDs
+ * would latch in the gap between them. For larger or chained panels, raise the buffer size by adding
+ * <code>spidev.bufsiz=65536</code> to <code>/boot/firmware/cmdline.txt</code>.
+ * </p>
+ */
+public class Pi4JSpiRgbLedMatrix {
+
+    /**
+     * SPI clock, 3 SPI bits per WS2812B bit of 1.25 µs
+     */
+    private static final int SPI_BAUD = 2_400_000;
+
+    /**
+     * SPI bytes per data byte, as every data bit becomes 3 SPI bits
+     */
+    private static final int ENCODED_BYTES = 3;
+
+    /**
+     * Low time after a frame that makes the LEDs latch the data, in SPI bytes of 3.33 µs.
+     * 300 µs is enough for the newer WS2812B revisions that need more than 280 µs.
+     */
+    private static final int RESET_BYTES = 90;
+
+    /**
+     * Module parameter with the maximum size of a spidev transfer, and its default
+     */
+    private static final Path SPIDEV_BUFSIZ = Path.of("/sys/module/spidev/parameters/bufsiz");
+    private static final int DEFAULT_SPIDEV_BUFSIZ = 4096;
+
+    /**
+     * Encoded SPI bytes for every possible data byte, most significant bit first
+     */
+    private static final byte[] ENCODING = createEncoding();
+
+    /**
+     * Size and wiring of the matrix
+     */
+    private final MatrixGeometry geometry;
+    private final int width;
+    private final int height;
+
+    /**
+     * Packed RGB (0x00RRGGBB) frame buffer for the matrix, row by row
+     */
+    private final int[] pixels;
+
+    /**
+     * Encoded SPI data of a frame, 3 data bytes per LED in GRB order followed by the reset gap, reused for every refresh
+     */
+    private final byte[] spiData;
+
+    /**
+     * Reused image for drawing with {@link Graphics2D}
+     */
+    private final BufferedImage canvas;
+
+    /**
+     * Pi4J SPI instance, only its MOSI pin is used
+     */
+    private final Spi spi;
+
+    /**
+     * Default brightness (0.0 to 1.0)
+     */
+    private double brightness = 0.1; // Start dim to avoid power issues
+
+    /**
+     * Brightness as a fixed-point factor (0 to 256)
+     */
+    private int brightnessScale = (int) Math.round(brightness * 256);
+
+    /**
+     * Creates a new RGB LED matrix component on SPI bus 0.
+     *
+     * @param pi4j Pi4J context
+     */
+    public Pi4JSpiRgbLedMatrix(Context pi4j) {
+        this(pi4j, MatrixGeometry.CROWPI);
+    }
+
+    /**
+     * Creates a new RGB LED matrix component with the given size and wiring.
+     *
+     * @param pi4j     Pi4J context
+     * @param geometry Size and wiring of the matrix
+     * @throws IllegalArgumentException When a frame doesn't fit in one spidev transfer
+     */
+    public Pi4JSpiRgbLedMatrix(Context pi4j, MatrixGeometry geometry) {
+        int frameBytes = geometry.getLedCount() * 3 * ENCODED_BYTES + RESET_BYTES;
+        int bufferSize = spidevBufferSize();
+        if (frameBytes > bufferSize) {
+            throw new IllegalArgumentException("A frame of " + geometry.getLedCount() + " LEDs needs " + frameBytes
+                    + " SPI bytes, but spidev only accepts " + bufferSize + " per transfer, "
+                    + "add spidev.bufsiz=" + Integer.highestOneBit(frameBytes) * 2 + " to cmdline.txt");
+        }
+        this.geometry = geometry;
+        this.width = geometry.getWidth();
+        this.height = geometry.getHeight();
+        this.pixels = new int[width * height];
+        this.spiData = new byte[frameBytes];
+        this.canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        var spiConfig = Spi.newConfigBuilder(pi4j)
+                .id("ws2812b-spi")
+                .name("ws2812b-spi")
+                .bus(SpiBus.BUS_0)
+                .chipSelect(SpiChipSelect.CS_0)
+                .baud(SPI_BAUD)
+                .mode(SpiMode.MODE_0)
+                .build();
+        this.spi = pi4j.create(spiConfig);
+    }
+
+    /**
+     * Reads the maximum transfer size of spidev, or returns its default when the module parameter can't be read
+     */
+    private static int spidevBufferSize() {
+        try {
+            return Integer.parseInt(Files.readString(SPIDEV_BUFSIZ).trim());
+        } catch (IOException | NumberFormatException e) {
+            return DEFAULT_SPIDEV_BUFSIZ;
+        }
+    }
+
+    public static void main(String[] args) {
+        // Initialize the Pi4J context
+        var pi4j = Pi4J.newAutoContext();
+
+        // Initialize the RGB LED Matrix
+        var geometry = args.length > 0 ? MatrixGeometry.parse(args[0]) : MatrixGeometry.CROWPI;
+        var matrix = new Pi4JSpiRgbLedMatrix(pi4j, geometry);
+
+        // Display something on the LED Matrix
+        matrix.fill(Color.RED);
+        matrix.refresh();
+        System.out.println("Filling with red...");
+        sleep(1000);
+
+        matrix.fill(Color.BLUE);
+        matrix.refresh();
+        System.out.println("Filling with blue...");
+        sleep(1000);
+
+        matrix.setPixel(2, 3, Color.GREEN);
+        matrix.refresh();
+        System.out.println("Set one pixel green...");
+        sleep(1000);
+
+        // Turn off all LEDs before shutting down
+        matrix.clear();
+        matrix.refresh();
+
+        // Shut down the Pi4J context
+        pi4j.shutdown();
+
+        System.out.println("Done");
+    }
+
+    /**
+     * Utility function to sleep for the specified amount of milliseconds.
+     * An {@link InterruptedException} will be catched and ignored while setting the interrupt flag again.
+     *
+     * @param milliseconds Time in milliseconds to sleep
+     */
+    private static void sleep(long milliseconds) {
+        try {
+            Thread.sleep(milliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the lookup table of the 3-bit symbols, 24 SPI bits for the 8 bits of every data byte
+     */
+    private static byte[] createEncoding() {
+        var encoding = new byte[256 * ENCODED_BYTES];
+        for (int value = 0; value < 256; value++) {
+            int bits = 0;
+            for (int bit = 7; bit >= 0; bit--) {
+                bits = (bits << 3) | (((value >> bit) & 1) != 0 ? 0b110 : 0b100);
+            }
+            encoding[value * ENCODED_BYTES] = (byte) (bits >> 16);
+            encoding[value * ENCODED_BYTES + 1] = (byte) (bits >> 8);
+            encoding[value * ENCODED_BYTES + 2] = (byte) bits;
+        }
+        return encoding;
+    }
+
+    /**
+     * Gets the current brightness level
+     *
+     * @return Current brightness (0.0 to 1.0)
+     */
+    public double getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * Sets the brightness of the matrix (0.0 to 1.0)
+     * Note: Be careful with high brightness values as they can draw significant current
+     *
+     * @param brightness Brightness level (0.0 = off, 1.0 = full brightness)
+     */
+    public void setBrightness(double brightness) {
+        this.brightness = Math.max(0.0, Math.min(1.0, brightness));
+        this.brightnessScale = (int) Math.round(this.brightness * 256);
+    }
+
+    /**
+     * Sets a pixel to a specific color
+     *
+     * @param x   X coordinate (0 to width - 1)
+     * @param y   Y coordinate (0 to height - 1)
+     * @param rgb Packed RGB color (0x00RRGGBB), the alpha byte is ignored
+     */
+    public void setPixel(int x, int y, int rgb) {
+        if (geometry.contains(x, y)) {
+            pixels[y * width + x] = rgb & 0xFFFFFF;
+        }
+    }
+
+    /**
+     * Sets a pixel to a specific color
+     *
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
+     * @param color Color to set
+     */
+    public void setPixel(int x, int y, Color color) {
+        setPixel(x, y, color.getRGB());
+    }
+
+    /**
+     * Sets a pixel to on or off (for monochrome compatibility)
+     *
+     * @param x     X coordinate (0 to width - 1)
+     * @param y     Y coordinate (0 to height - 1)
+     * @param state true for on (white), false for off (black)
+     */
+    public void setPixel(int x, int y, boolean state) {
+        setPixel(x, y, state ? 0xFFFFFF : 0x000000);
+    }
+
+    /**
+     * Sets all pixels at once
+     *
+     * @param rgb Packed RGB colors (0x00RRGGBB), row by row, with a length of at least width * height
+     */
+    public void setPixels(int[] rgb) {
+        if (rgb.length < pixels.length) {
+            throw new IllegalArgumentException("Expected " + pixels.length + " pixels, got " + rgb.length);
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = rgb[i] & 0xFFFFFF;
+        }
+    }
+
+    /**
+     * Gets the color of a specific pixel
+     *
+     * @param x X coordinate (0 to width - 1)
+     * @param y Y coordinate (0 to height - 1)
+     * @return Packed RGB color (0x00RRGGBB) of the pixel
+     */
+    public int getPixel(int x, int y) {
+        if (geometry.contains(x, y)) {
+            return pixels[y * width + x];
+        }
+        return 0x000000;
+    }
+
+    /**
+     * Clears the entire matrix (all pixels off)
+     */
+    public void clear() {
+        Arrays.fill(pixels, 0x000000);
+    }
+
+    /**
+     * Sets the entire matrix to a single color
+     *
+     * @param rgb Packed RGB color (0x00RRGGBB) to fill the matrix with
+     */
+    public void fill(int rgb) {
+        Arrays.fill(pixels, rgb & 0xFFFFFF);
+    }
+
+    /**
+     * Sets the entire matrix to a single color
+     *
+     * @param color Color to fill the matrix with
+     */
+    public void fill(Color color) {
+        fill(color.getRGB());
+    }
+
+    /**
+     * Refreshes the display by encoding the frame buffer and sending it in one SPI transfer.
+     * The reset gap at the end of the data stays zero, so MOSI is low long enough for the LEDs to latch.
+     */
+    public void refresh() {
+        for (int i = 0; i < pixels.length; i++) {
+            int rgb = pixels[i];
+            int offset = geometry.indexOf(i) * 3 * ENCODED_BYTES;
+
+            // WS2812B expects GRB order
+            offset = encode((((rgb >> 8) & 0xFF) * brightnessScale) >> 8, offset);
+            offset = encode((((rgb >> 16) & 0xFF) * brightnessScale) >> 8, offset);
+            offset = encode(((rgb & 0xFF) * brightnessScale) >> 8, offset);
+        }
+        spi.write(spiData, 0, spiData.length);
+    }
+
+    /**
+     * Copies the encoded SPI bytes of a data byte into the SPI data
+     *
+     * @return Offset after the encoded bytes
+     */
+    private int encode(int value, int offset) {
+        System.arraycopy(ENCODING, value * ENCODED_BYTES, spiData, offset, ENCODED_BYTES);
+        return offset + ENCODED_BYTES;
+    }
+
+    /**
+     * Drawing support for RGB images
+     */
+    public void draw(Consumer<Graphics2D> drawer) {
+        final var graphics = canvas.createGraphics();
+        graphics.setBackground(Color.BLACK);
+        graphics.clearRect(0, 0, width, height);
+        drawer.accept(graphics);
+        graphics.dispose();
+        draw(canvas);
+    }
+
+    /**
+     * Copies the image into the frame buffer and refreshes the display. Images of type
+     * {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB} are read
+     * straight from their raster.
+     *
+     * @param image Image of exactly width x height pixels
+     */
+    public void draw(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height) {
+            throw new IllegalArgumentException("Image must be exactly " + width + "x" + height + " pixels");
+        }
+
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, 0, width, height, pixels);
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+        setPixels(pixels);
+        refresh();
+    }
+}
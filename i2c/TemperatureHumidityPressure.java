@@ -15,9 +15,13 @@
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 //DEPS com.pi4j:pi4j-drivers:0.0.1-SNAPSHOT
 
+//SOURCES helper/Bmx280Sampler.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.drivers.sensor.environment.bmx280.Bmx280Driver;
 import com.pi4j.io.i2c.I2CConfigBuilder;
+import helper.Bmx280Sampler;
+import helper.Bmx280Sampler.Quantity;
 
 /**
  * Example code to read the temperature, humidity and pressure from a BME280 sensor, on an Adafruit board via I2C and SPI.
@@ -25,6 +29,10 @@ import com.pi4j.io.i2c.I2CConfigBuilder;
  * From the terminal, in the `i2c` directory, start this example with:
  * <code>jbang TemperatureHumidityPressure.java</code>
  * <p>
+ * The sensor is read every 250ms by {@link Bmx280Sampler} on a virtual thread, which keeps the minimum, maximum,
+ * mean and standard deviation of the last 10 seconds, minute and 10 minutes. Every 2 seconds, a snapshot of them
+ * is printed.
+ * <p>
  * Based on:
  *
  * <ul>
@@ -63,6 +71,8 @@ import com.pi4j.io.i2c.I2CConfigBuilder;
  */
 private static final int I2C_BUS = 0x01;
 private static final int I2C_DEVICE = 0x77;
+private static final long INTERVAL_MILLIS = 250;
+private static final long[] WINDOWS_MILLIS = {10_000, 60_000, 600_000};
 
 void main() {
     try {
@@ -74,16 +84,12 @@ void main() {
         var i2c = pi4j.create(i2cConfig);
         var sensor = new Bmx280Driver(i2c);
 
-        for (int counter = 0; counter < 10; counter++) {
-            IO.println("**************************************");
-            IO.println("Reading values, loop " + (counter + 1));
-
-            var measurement = sensor.readMeasurement();
-            IO.println("Humidity : " + measurement.getHumidity());
-            IO.println("Pressure : " + measurement.getPressure());
-            IO.println("Temperature : " + measurement.getTemperature());
-
-            Thread.sleep(2_000);
+        // Sample on a virtual thread, and print the statistics of the last 10 seconds, minute and 10 minutes
+        try (var sampler = new Bmx280Sampler(sensor, INTERVAL_MILLIS, WINDOWS_MILLIS)) {
+            for (int counter = 0; counter < 10; counter++) {
+                Thread.sleep(2_000);
+                printSnapshot(counter + 1, sampler.getSnapshot());
+            }
         }
 
         sensor.close();
@@ -95,4 +101,21 @@ void main() {
         IO.println("**************************************");
         IO.println("Finished");
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Prints the latest values and the statistics per window
+ */
+private static void printSnapshot(int loop, Bmx280Sampler.Snapshot snapshot) {
+    IO.println("**************************************");
+    IO.println("Snapshot " + loop + ", " + snapshot.samples() + " samples, " + snapshot.errors() + " errors");
+    for (var quantity : Quantity.values()) {
+        IO.println(quantity + " : " + snapshot.latest(quantity));
+        for (int window = 0; window < WINDOWS_MILLIS.length; window++) {
+            var statistics = snapshot.statistics(window, quantity);
+            IO.println(String.format("  last %4ds: min %.2f, max %.2f, mean %.2f, stddev %.3f (%d samples)",
+                    statistics.windowMillis() / 1000, statistics.min(), statistics.max(),
+                    statistics.mean(), statistics.stddev(), statistics.count()));
+        }
+    }
+}
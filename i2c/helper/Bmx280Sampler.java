@@ -0,0 +1,369 @@
+package helper;
+
+import com.pi4j.drivers.sensor.environment.bmx280.Bmx280Driver;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads a BME280 or BMP280 sensor at a fixed rate on a virtual thread, and keeps rolling statistics of the
+ * temperature, humidity and pressure over several time windows.
+ * <p>
+ * Every reading is stored in a primitive ring buffer per quantity, which holds the samples of the longest window.
+ * Per window, the statistics are updated in constant time per sample: the sum and the sum of squares get the new
+ * sample added and the sample that leaves the window subtracted, which gives the mean and standard deviation. The
+ * values are taken relative to the first reading, so the squares of a pressure around 100000 Pa don't swallow the
+ * small variations. The minimum and maximum are the first entries of a monotonic queue of sample numbers, in which
+ * every sample is added and removed once.
+ * <p>
+ * The statistics are published with a sequence lock: the sampler never waits for readers, and readers retry in the
+ * rare case that the statistics were updated while they were copying them.
+ * <p>
+ * The reads happen at absolute deadlines, so a slow read doesn't shift the next ones. When a read takes longer
+ * than the interval, the deadlines that passed are skipped. A failed read is counted and sampling continues.
+ */
+public class Bmx280Sampler implements AutoCloseable {
+
+    /**
+     * Quantities measured by the sensor, in the units of the driver
+     */
+    public enum Quantity {
+        TEMPERATURE, HUMIDITY, PRESSURE
+    }
+
+    private static final int QUANTITIES = Quantity.values().length;
+    private static final int MIN = 0;
+    private static final int MAX = 1;
+    private static final int MEAN = 2;
+    private static final int STDDEV = 3;
+    private static final int STATISTICS = 4;
+
+    /**
+     * Reads all quantities at once, called by the sampler.
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * @param values Array to fill, indexed by the ordinal of {@link Quantity}
+         */
+        void read(double[] values);
+    }
+
+    private final Source source;
+    private final long intervalNanos;
+    private final long[] windowMillis;
+    private final int[] windowSamples;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long skipped = 0;
+    private volatile Exception lastError;
+
+    /**
+     * State of the sampler thread: ring buffers per quantity, and per window and quantity the sums and the queues
+     * for the minimum and maximum, indexed by window * QUANTITIES + quantity
+     */
+    private final double[][] rings;
+    private final double[] reading = new double[QUANTITIES];
+    private final double[] offsets = new double[QUANTITIES];
+    private final double[] sums;
+    private final double[] squares;
+    private final long[][] minQueues;
+    private final long[][] maxQueues;
+    private final long[] minHeads;
+    private final long[] minTails;
+    private final long[] maxHeads;
+    private final long[] maxTails;
+
+    /**
+     * Published statistics, guarded by the sequence which is odd while they are being written
+     */
+    private final AtomicLong sequence = new AtomicLong();
+    private final double[] latest = new double[QUANTITIES];
+    private final double[] statistics;
+    private long timestamp = 0;
+    private long samples = 0;
+    private long errors = 0;
+
+    /**
+     * Starts sampling a BMx280 sensor.
+     *
+     * @param sensor         Driver of the sensor, which is only used by the sampler thread from now on
+     * @param intervalMillis Time between two reads
+     * @param windowMillis   Lengths of the windows to keep statistics for, e.g. 10_000 and 60_000
+     */
+    public Bmx280Sampler(Bmx280Driver sensor, long intervalMillis, long... windowMillis) {
+        this(values -> {
+            var measurement = sensor.readMeasurement();
+            values[Quantity.TEMPERATURE.ordinal()] = measurement.getTemperature();
+            values[Quantity.HUMIDITY.ordinal()] = measurement.getHumidity();
+            values[Quantity.PRESSURE.ordinal()] = measurement.getPressure();
+        }, intervalMillis, windowMillis);
+    }
+
+    /**
+     * Starts sampling any source of the same quantities.
+     *
+     * @param source         Source of the readings
+     * @param intervalMillis Time between two reads
+     * @param windowMillis   Lengths of the windows to keep statistics for, each holds windowMillis / intervalMillis
+     *                       samples
+     */
+    public Bmx280Sampler(Source source, long intervalMillis, long... windowMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("The interval must be positive");
+        }
+        if (windowMillis.length == 0) {
+            throw new IllegalArgumentException("At least one window is needed");
+        }
+        this.source = source;
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.windowMillis = windowMillis.clone();
+        this.windowSamples = new int[windowMillis.length];
+        int longest = 1;
+        for (int window = 0; window < windowMillis.length; window++) {
+            if (windowMillis[window] < intervalMillis) {
+                throw new IllegalArgumentException("Window of " + windowMillis[window]
+                        + "ms is shorter than the interval");
+            }
+            windowSamples[window] = Math.toIntExact(windowMillis[window] / intervalMillis);
+            longest = Math.max(longest, windowSamples[window]);
+        }
+
+        // One extra slot, so the sample that leaves the longest window can still be read after the new one is stored
+        this.rings = new double[QUANTITIES][longest + 1];
+        int slots = windowMillis.length * QUANTITIES;
+        this.sums = new double[slots];
+        this.squares = new double[slots];
+        this.minQueues = new long[slots][];
+        this.maxQueues = new long[slots][];
+        for (int slot = 0; slot < slots; slot++) {
+            minQueues[slot] = new long[windowSamples[slot / QUANTITIES]];
+            maxQueues[slot] = new long[windowSamples[slot / QUANTITIES]];
+        }
+        this.minHeads = new long[slots];
+        this.minTails = new long[slots];
+        this.maxHeads = new long[slots];
+        this.maxTails = new long[slots];
+        this.statistics = new double[slots * STATISTICS];
+
+        this.thread = Thread.ofVirtual().name("bmx280-sampler").start(this::run);
+    }
+
+    /**
+     * @return Number of windows
+     */
+    public int getWindowCount() {
+        return windowMillis.length;
+    }
+
+    /**
+     * @return Number of deadlines skipped because a read took longer than the interval
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return Exception of the last failed read, null if all reads succeeded
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Copies the latest reading and the statistics of all windows, without blocking the sampler.
+     *
+     * @return Snapshot, with 0 samples if there is no reading yet
+     */
+    public Snapshot getSnapshot() {
+        double[] latestCopy = new double[QUANTITIES];
+        double[] statisticsCopy = new double[statistics.length];
+        while (true) {
+            long before = sequence.getAcquire();
+            System.arraycopy(latest, 0, latestCopy, 0, QUANTITIES);
+            System.arraycopy(statistics, 0, statisticsCopy, 0, statistics.length);
+            long time = timestamp;
+            long count = samples;
+            long failed = errors;
+            VarHandle.loadLoadFence();
+            if ((before & 1) == 0 && sequence.getPlain() == before) {
+                var windows = new Statistics[windowMillis.length][QUANTITIES];
+                for (int window = 0; window < windowMillis.length; window++) {
+                    int windowCount = (int) Math.min(count, windowSamples[window]);
+                    for (int quantity = 0; quantity < QUANTITIES; quantity++) {
+                        int base = (window * QUANTITIES + quantity) * STATISTICS;
+                        windows[window][quantity] = new Statistics(windowMillis[window], windowCount,
+                                statisticsCopy[base + MIN], statisticsCopy[base + MAX],
+                                statisticsCopy[base + MEAN], statisticsCopy[base + STDDEV]);
+                    }
+                }
+                return new Snapshot(time, count, failed, latestCopy, windows);
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Stops sampling and waits for the sampler thread, the sensor itself must be closed by the caller.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long deadline = System.nanoTime();
+        while (running) {
+            try {
+                source.read(reading);
+                add(System.nanoTime());
+            } catch (RuntimeException e) {
+                lastError = e;
+                publishError();
+            }
+
+            deadline += intervalNanos;
+            long late = System.nanoTime() - deadline;
+            if (late > 0) {
+                long missed = late / intervalNanos + 1;
+                skipped += missed;
+                deadline += missed * intervalNanos;
+            }
+            long remaining;
+            while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Stores the reading, updates the statistics of every window in constant time, and publishes them
+     */
+    private void add(long now) {
+        long sample = samples;
+        if (sample == 0) {
+            System.arraycopy(reading, 0, offsets, 0, QUANTITIES);
+        }
+        int capacity = rings[0].length;
+        for (int quantity = 0; quantity < QUANTITIES; quantity++) {
+            rings[quantity][(int) (sample % capacity)] = reading[quantity];
+        }
+
+        long current = sequence.getPlain();
+        sequence.setPlain(current + 1);
+        VarHandle.storeStoreFence();
+        for (int window = 0; window < windowMillis.length; window++) {
+            int size = windowSamples[window];
+            long count = Math.min(sample + 1, size);
+            for (int quantity = 0; quantity < QUANTITIES; quantity++) {
+                int slot = window * QUANTITIES + quantity;
+                double[] ring = rings[quantity];
+                double value = reading[quantity] - offsets[quantity];
+                sums[slot] += value;
+                squares[slot] += value * value;
+                if (sample >= size) {
+                    double leaving = ring[(int) ((sample - size) % capacity)] - offsets[quantity];
+                    sums[slot] -= leaving;
+                    squares[slot] -= leaving * leaving;
+                }
+
+                int base = slot * STATISTICS;
+                double mean = sums[slot] / count;
+                double variance = count > 1 ? (squares[slot] - sums[slot] * mean) / (count - 1) : 0;
+                statistics[base + MIN] = ring[(int) (push(minQueues[slot], minHeads, minTails, slot,
+                        ring, sample, size, 1) % capacity)];
+                statistics[base + MAX] = ring[(int) (push(maxQueues[slot], maxHeads, maxTails, slot,
+                        ring, sample, size, -1) % capacity)];
+                statistics[base + MEAN] = mean + offsets[quantity];
+                statistics[base + STDDEV] = Math.sqrt(Math.max(0, variance));
+            }
+        }
+        System.arraycopy(reading, 0, latest, 0, QUANTITIES);
+        timestamp = now;
+        samples = sample + 1;
+        sequence.setRelease(current + 2);
+    }
+
+    /**
+     * Adds a sample number to a monotonic queue, which keeps the samples of the window that can still become the
+     * minimum (sign 1) or maximum (sign -1), and returns the sample number at its head
+     */
+    private static long push(long[] queue, long[] heads, long[] tails, int slot,
+                             double[] ring, long sample, int size, int sign) {
+        int capacity = ring.length;
+        double value = ring[(int) (sample % capacity)] * sign;
+        long head = heads[slot];
+        long tail = tails[slot];
+        // Drop the samples that have left the window, and the samples that can't win anymore
+        while (head < tail && queue[(int) (head % queue.length)] <= sample - size) {
+            head++;
+        }
+        while (head < tail && ring[(int) (queue[(int) ((tail - 1) % queue.length)] % capacity)] * sign >= value) {
+            tail--;
+        }
+        queue[(int) (tail % queue.length)] = sample;
+        heads[slot] = head;
+        tails[slot] = tail + 1;
+        return queue[(int) (head % queue.length)];
+    }
+
+    /**
+     * Counts a failed read with the sequence lock
+     */
+    private void publishError() {
+        long current = sequence.getPlain();
+        sequence.setPlain(current + 1);
+        VarHandle.storeStoreFence();
+        errors++;
+        sequence.setRelease(current + 2);
+    }
+
+    /**
+     * Statistics of one quantity over one window
+     *
+     * @param windowMillis Length of the window
+     * @param count        Number of samples in the window, less than the window holds until it has filled up
+     * @param min          Lowest value
+     * @param max          Highest value
+     * @param mean         Average value
+     * @param stddev       Sample standard deviation
+     */
+    public record Statistics(long windowMillis, int count, double min, double max, double mean, double stddev) {
+    }
+
+    /**
+     * Consistent copy of the state of the sampler
+     *
+     * @param timestampNanos {@link System#nanoTime()} of the latest reading
+     * @param samples        Number of successful reads
+     * @param errors         Number of failed reads
+     * @param latest         Latest reading, indexed by the ordinal of {@link Quantity}
+     * @param windows        Statistics indexed by window and by the ordinal of {@link Quantity}
+     */
+    public record Snapshot(long timestampNanos, long samples, long errors, double[] latest, Statistics[][] windows) {
+
+        /**
+         * @param quantity Quantity
+         * @return Latest value of the quantity
+         */
+        public double latest(Quantity quantity) {
+            return latest[quantity.ordinal()];
+        }
+
+        /**
+         * @param window   Index of the window, in the order of the constructor
+         * @param quantity Quantity
+         * @return Statistics of the quantity over the window
+         */
+        public Statistics statistics(int window, Quantity quantity) {
+            return windows[window][quantity.ordinal()];
+        }
+    }
+}
@@ -12,9 +12,12 @@
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 
+//SOURCES helper/Melody.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.io.pwm.Pwm;
 import com.pi4j.io.pwm.PwmType;
+import helper.Melody;
 
 /**
  * <p>
@@ -22,6 +25,10 @@ import com.pi4j.io.pwm.PwmType;
  * Make sure to follow the README of this project to learn more about JBang and how to install it.
  * </p>
  * <p>
+ * The notes are written in the RTTTL ringtone format and compiled into a {@link Melody}, which is played with
+ * absolute deadlines, so the tempo doesn't drift. After every melody, the timing error of the notes is printed.
+ * </p>
+ * <p>
  * You need to modify `config.txt` on your Raspberry Pi to configure the PWM channels.
  * See <a href="https://www.pi4j.com/documentation/io-examples/pwm/">the Pi4J PWM documentation</a> for more details.
  * </p>
@@ -36,6 +43,10 @@ import com.pi4j.io.pwm.PwmType;
 private static final int CHANNEL = 2;
 private static Pwm pwm;
 
+// The C major scale, every note 500ms, and the start of Ode to Joy with a tie between the last two notes
+private static final String SCALE = "Scale:d=4,o=4,b=120:c,d,e,f,g,a,b,c5";
+private static final String ODE_TO_JOY = "Ode to Joy:d=4,o=5,b=140:e,e,f,g,g,f,e,d,c,c,d,e,e.,8d,2d_,8d";
+
 void main() {
     System.out.println("Starting PWM output example...");
 
@@ -54,23 +65,14 @@ void main() {
                 .build();
         pwm = pi4j.create(pwmConfig);
 
-        int[] frequencies = new int[]{
-                262, // C4(262)
-                294, // D4(294)q
-                330, // E4(330),
-                349, // F4(349),
-                392, // G4(392),
-                440, // A4(440),
-                494, // B4(494),
-                523 // C5(523),
-        };
-
-        for (int frequency : frequencies) {
-            System.out.println("Playing tone with frequency " + frequency + " Hz");
-            playTone(frequency, 500);
+        for (String rtttl : new String[]{SCALE, ODE_TO_JOY}) {
+            var melody = Melody.parse(rtttl);
+            System.out.println("Playing " + melody.getName() + ", " + melody.getNoteCount() + " notes with "
+                    + melody.size() + " frequency changes");
+            report(melody, melody.play(frequency -> setFrequency(frequency)));
         }
 
-        // Shut down the Pi4J contextq
+        // Shut down the Pi4J context
         pi4j.shutdown();
 
         System.out.println("Done");
@@ -80,58 +82,37 @@ void main() {
 }
 
 /**
- * Plays a tone with the given frequency in Hz for a specific duration.
- * This method is blocking and will sleep until the specified duration has passed.
- * A frequency of zero causes the buzzer to play silence.
- * A duration of zero to play the tone indefinitely and return immediately.
+ * Plays a tone with the given frequency in Hz until the next change, and returns immediately.
+ * A frequency of zero silences the buzzer.
  *
  * @param frequency Frequency in Hz
- * @param duration  Duration in milliseconds
  */
-private static void playTone(int frequency, int duration) {
+private static void setFrequency(int frequency) {
     if (frequency > 0) {
         // Activate the PWM with a duty cycle of 50% and the given frequency in Hz.
         // This causes the buzzer to be on for half of the time during each cycle, resulting in the desired frequency.
         pwm.on(50, frequency);
-
-        // If the duration is larger than zero, the tone should be automatically stopped after the given duration.
-        if (duration > 0) {
-            sleep(duration);
-            playSilence();
-        }
     } else {
-        playSilence(duration);
+        pwm.off();
     }
 }
 
 /**
- * Silences the buzzer and returns immediately.
- */
-private static void playSilence() {
-    pwm.off();
-}
-
-/**
- * Silences the buzzer and waits for the given duration.
- * This method is blocking and will sleep until the specified duration has passed.
+ * Prints how late the frequency changes of every note were, and the average and worst of the melody.
  *
- * @param duration Duration in milliseconds
+ * @param melody   Melody that was played
+ * @param lateness Lateness of every frequency change in nanoseconds
  */
-private static void playSilence(int duration) {
-    playSilence();
-    sleep(duration);
-}
-
-/**
- * Utility function to sleep for the specified amount of milliseconds.
- * An {@link InterruptedException} will be catched and ignored while setting the interrupt flag again.
- *
- * @param milliseconds Time in milliseconds to sleep
- */
-private static void sleep(long milliseconds) {
-    try {
-        Thread.sleep(milliseconds);
-    } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
+private static void report(Melody melody, long[] lateness) {
+    long total = 0;
+    long worst = 0;
+    for (int event = 0; event < lateness.length; event++) {
+        System.out.printf("  Note %d, %s: %.3f ms late%n", melody.getNote(event) + 1,
+                melody.getFrequency(event) == 0 ? "silence" : melody.getFrequency(event) + " Hz",
+                lateness[event] / 1_000_000.0);
+        total += lateness[event];
+        worst = Math.max(worst, lateness[event]);
     }
-}
\ No newline at end of file
+    System.out.printf("Average %.3f ms late, worst %.3f ms%n",
+            total / 1_000_000.0 / Math.max(1, lateness.length), worst / 1_000_000.0);
+}
@@ -0,0 +1,96 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//SOURCES helper/HighResolutionPwm.java
+//SOURCES helper/SysfsPwmChannel.java
+//SOURCES helper/PcmPwmPlayer.java
+
+import helper.HighResolutionPwm;
+import helper.PcmPwmPlayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * <p>
+ * Example code to play a WAV clip on the buzzer, instead of only square wave tones as in <code>Buzzer.java</code>.
+ * Make sure to follow the README of this project to learn more about JBang and how to install it.
+ * </p>
+ * <p>
+ * The PWM channel of the buzzer runs at 40kHz, and the {@link PcmPwmPlayer} changes its duty cycle 8000 times
+ * per second to follow the audio. Afterwards, the achieved update rate and the number of underruns are printed.
+ * A buzzer is not a speaker, so don't expect hi-fi, but speech and simple sounds are recognizable.
+ * </p>
+ * <p>
+ * You need to modify `config.txt` on your Raspberry Pi to configure the PWM channels.
+ * See <a href="https://www.pi4j.com/documentation/io-examples/pwm/">the Pi4J PWM documentation</a> for more details.
+ * </p>
+ * <p>
+ * From the terminal, in the `pwm` directory, start this example with an 8-bit or 16-bit PCM WAV file, or without
+ * one to play a generated sweep:
+ * <code>jbang BuzzerWav.java clip.wav</code>
+ * </p>
+ */
+// Buzzer in CrowPi is connected to BCM 18 = on RPi 5 is Channel 2
+private static final int PWM_CHIP = 0;
+private static final int CHANNEL = 2;
+private static final int CARRIER_HZ = 40_000;
+private static final int UPDATE_RATE = 8_000;
+
+void main(String[] args) {
+    System.out.println("Starting PCM audio example...");
+
+    try {
+        Path file = args.length > 0 ? Path.of(args[0]) : createSweep();
+
+        PcmPwmPlayer.Result result;
+        try (var pwm = new HighResolutionPwm(PWM_CHIP, CHANNEL, CARRIER_HZ)) {
+            var player = new PcmPwmPlayer(pwm, UPDATE_RATE, 1.0);
+            System.out.println("Playing " + file);
+            result = player.play(file);
+            pwm.off();
+        }
+
+        System.out.println("File: " + result.fileSampleRate() + "Hz, " + result.channels() + " channel(s), "
+                + result.bits() + " bits");
+        System.out.printf("Written %d samples at %.0f per second of %d, %d underruns with %d skipped samples%n",
+                result.samplesWritten(), result.achievedRate(), UPDATE_RATE, result.underruns(),
+                result.samplesSkipped());
+        System.out.println("Done");
+    } catch (Exception ex) {
+        System.err.println("Error: " + ex.getMessage());
+    }
+}
+
+/**
+ * Writes a 16-bit mono WAV file with a sine sweep from 200Hz to 2000Hz in 3 seconds.
+ */
+private static Path createSweep() throws IOException {
+    int sampleRate = 22_050;
+    int samples = sampleRate * 3;
+    var wav = ByteBuffer.allocate(44 + samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+    wav.putInt(0x46464952).putInt(36 + samples * 2).putInt(0x45564157);
+    // "fmt " chunk: PCM, 1 channel, sample rate, byte rate, block align, bits per sample
+    wav.putInt(0x20746D66).putInt(16).putShort((short) 1).putShort((short) 1)
+            .putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+    wav.putInt(0x61746164).putInt(samples * 2);
+    double phase = 0;
+    for (int i = 0; i < samples; i++) {
+        double frequency = 200 + 1800.0 * i / samples;
+        phase += 2 * Math.PI * frequency / sampleRate;
+        wav.putShort((short) (Math.sin(phase) * 30_000));
+    }
+    Path file = Files.createTempFile("sweep", ".wav");
+    file.toFile().deleteOnExit();
+    Files.write(file, wav.array());
+    return file;
+}
@@ -12,14 +12,24 @@
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 
+//SOURCES helper/FadeEngine.java
+//SOURCES helper/HighResolutionPwm.java
+//SOURCES helper/SysfsPwmChannel.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.io.pwm.Pwm;
 import com.pi4j.io.pwm.PwmType;
+import helper.FadeEngine;
+import helper.HighResolutionPwm;
 
 /**
  * Example code to fade a LED with a PWM signal and a HARDWARE PWM pin.
  * Make sure to follow the README of this project to learn more about JBang and how to install it.
  * <p>
+ * The LED is faded by a {@link FadeEngine} with an ease-in-out curve and gamma correction. The duty cycle is set
+ * in nanoseconds with {@link HighResolutionPwm} instead of in whole percents, so even the darkest part of the fade
+ * changes smoothly, with at most one write per frame of the fade engine.
+ * <p>
  * From the terminal, in the `digital` directory, start this example with:
  * <code>jbang FadingLedHardware.java</code>
  * </p>
@@ -60,20 +70,22 @@ void main() {
         var pwm = pi4j.create(pwmConfig);
         System.out.println("PWM initialized");
 
-        // Loop through PWM values 10 times
-        for (int loop = 0; loop < 10; loop++) {
-            // Fade up from 0% to 100%
-            System.out.println("Fading up");
-            for (int dutyCycle = 0; dutyCycle <= 100; dutyCycle += 1) {
-                pwm.on(dutyCycle);
-                Thread.sleep(10);
-            }
-            // Fade down from 100% to 0%
-            System.out.println("Fading down");
-            for (int dutyCycle = 100; dutyCycle >= 0; dutyCycle -= 1) {
-                pwm.on(dutyCycle);
-                Thread.sleep(10);
+        // Set the duty cycle in nanoseconds, with the period of the Pi4J config, and fade up and down 10 times
+        try (var highResolutionPwm = new HighResolutionPwm(pwm);
+             var fades = new FadeEngine()) {
+            System.out.println("PWM period is " + highResolutionPwm.getPeriodNanos() + "ns");
+            int led = fades.addOutput((int) highResolutionPwm.getPeriodNanos(), highResolutionPwm::setDutyNanos);
+            for (int loop = 0; loop < 10; loop++) {
+                // Fade up from off to full brightness
+                System.out.println("Fading up");
+                fades.fade(led, 1.0, 1_000, FadeEngine.Easing.EASE_IN_OUT);
+                fades.awaitFades();
+                // Fade down from full brightness to off
+                System.out.println("Fading down");
+                fades.fade(led, 0.0, 1_000, FadeEngine.Easing.EASE_IN_OUT);
+                fades.awaitFades();
             }
+            System.out.println("Duty cycle written " + fades.getWrites() + " times");
         }
 
         // Turn off PWM
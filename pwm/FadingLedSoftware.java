@@ -12,19 +12,27 @@
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 
+//SOURCES helper/FadeEngine.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.io.pwm.Pwm;
 import com.pi4j.io.pwm.PwmType;
+import helper.FadeEngine;
 
 /**
  * Example code to fade a LED with a PWM signal and a SOFTWARE PWM pin.
  * Make sure to follow the README of this project to learn more about JBang and how to install it.
  * <p>
+ * The LED is faded by a {@link FadeEngine} with an ease-in-out curve and gamma correction, so the brightness
+ * changes smoothly, and the duty cycle is only written when the whole percent changes.
+ * <p>
  * From the terminal, in the `digital` directory, start this example with:
  * <code>jbang FadingLedSoftware.java</code>
  * <p>
  * WARNING! At this moment (December 2025), software PWM is not available yet with the FFM plugin...
  * So this example will not work yet, but it is here for future testing...
+ * Until then, <code>RgbLedPwm.java</code> in the `digital` directory does software PWM on any number of pins
+ * from one Java thread.
  * </p>
  */
 // Connect a LED to PIN 16 = BCM 23
@@ -50,20 +58,20 @@ void main() {
         var pwm = pi4j.create(pwmConfig);
         System.out.println("PWM initialized");
 
-        // Loop through PWM values 10 times
-        for (int loop = 0; loop < 10; loop++) {
-            // Fade up from 0% to 100%
-            System.out.println("Fading up");
-            for (int dutyCycle = 0; dutyCycle <= 100; dutyCycle += 1) {
-                pwm.on(dutyCycle);
-                Thread.sleep(10);
-            }
-            // Fade down from 100% to 0%
-            System.out.println("Fading down");
-            for (int dutyCycle = 100; dutyCycle >= 0; dutyCycle -= 1) {
-                pwm.on(dutyCycle);
-                Thread.sleep(10);
+        // Fade up and down 10 times, the duty cycle of the Pi4J PWM is in whole percents
+        try (var fades = new FadeEngine()) {
+            int led = fades.addOutput(100, pwm::on);
+            for (int loop = 0; loop < 10; loop++) {
+                // Fade up from off to full brightness
+                System.out.println("Fading up");
+                fades.fade(led, 1.0, 1_000, FadeEngine.Easing.EASE_IN_OUT);
+                fades.awaitFades();
+                // Fade down from full brightness to off
+                System.out.println("Fading down");
+                fades.fade(led, 0.0, 1_000, FadeEngine.Easing.EASE_IN_OUT);
+                fades.awaitFades();
             }
+            System.out.println("Duty cycle written " + fades.getWrites() + " times");
         }
 
         // Shut down the Pi4J context
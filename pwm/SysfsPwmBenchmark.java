@@ -0,0 +1,105 @@
+/// usr/bin/env jbang "$0" "$@" ; exit $?
+
+/**
+ * This example uses the simplifed main method, which is available since Java 25.
+ * More info about using specific Java versions with JBang is documented on
+ * https://www.jbang.dev/documentation/guide/latest/javaversions.html
+ */
+// JAVA 25
+
+//DEPS org.slf4j:slf4j-api:2.0.17
+//DEPS org.slf4j:slf4j-simple:2.0.17
+//DEPS com.pi4j:pi4j-core:4.0.0
+//DEPS com.pi4j:pi4j-plugin-linuxfs:4.0.0
+
+//SOURCES helper/SysfsPwmChannel.java
+
+import com.pi4j.Pi4J;
+import com.pi4j.io.pwm.Pwm;
+import com.pi4j.io.pwm.PwmType;
+import com.pi4j.plugin.linuxfs.provider.pwm.LinuxFsPwmProviderImpl;
+import helper.SysfsPwmChannel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+/**
+ * <p>
+ * Benchmark of the number of duty cycle updates per second of a hardware PWM channel, through the linuxfs provider
+ * of Pi4J, with a sysfs write per update, and with the files kept open by {@link SysfsPwmChannel}.
+ * </p>
+ * <p>
+ * You need to modify `config.txt` on your Raspberry Pi to configure the PWM channels.
+ * See <a href="https://www.pi4j.com/documentation/io-examples/pwm/">the Pi4J PWM documentation</a> for more details.
+ * </p>
+ * <p>
+ * From the terminal, in the `pwm` directory, start this example with the PWM chip and channel,
+ * by default chip 0 channel 2, which is the buzzer of the CrowPi on a Raspberry Pi 5:
+ * <code>jbang SysfsPwmBenchmark.java 0 2</code>
+ * </p>
+ */
+private static final int UPDATES = 20_000;
+private static final int ROUNDS = 3;
+private static final int FREQUENCY = 1000;
+
+void main(String[] args) throws IOException {
+    int chip = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+    int channel = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+    // The Pi4J linuxfs provider, which also exports the channel and sets the period
+    var pi4j = Pi4J.newContextBuilder()
+            .add(new LinuxFsPwmProviderImpl("/sys/class/pwm/"))
+            .build();
+    var pwm = pi4j.create(Pwm.newConfigBuilder(pi4j)
+            .pwmType(PwmType.HARDWARE)
+            .chip(chip)
+            .channel(channel)
+            .initial(0)
+            .frequency(FREQUENCY)
+            .build());
+    pwm.on(0);
+    // setDutyCycle only stores the value, on() is the call that writes the duty cycle, with the period and enable
+    double pi4jRate = measure("Pi4J linuxfs provider, Pwm.on(percent)", i -> pwm.on(i % 100));
+
+    // A new write of the text file for every update
+    var dutyCyclePath = Path.of("/sys/class/pwm/pwmchip" + chip + "/pwm" + channel + "/duty_cycle");
+    long period = 1_000_000_000L / FREQUENCY;
+    double filesRate = measure("Files.writeString per update", i -> {
+        try {
+            Files.writeString(dutyCyclePath, String.valueOf(i % period));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // The files kept open, with positional writes from a reused buffer
+    double channelRate;
+    try (var sysfs = new SysfsPwmChannel(chip, channel)) {
+        channelRate = measure("SysfsPwmChannel", i -> sysfs.setDutyNanos(i % period));
+        sysfs.setDutyNanos(0);
+    }
+
+    System.out.printf("SysfsPwmChannel is %.1fx faster than Pi4J and %.1fx faster than Files.writeString%n",
+            channelRate / pi4jRate, channelRate / filesRate);
+
+    pwm.off();
+    pi4j.shutdown();
+}
+
+/**
+ * Runs a number of rounds of updates, and prints and returns the best rate
+ */
+private static double measure(String name, IntConsumer update) {
+    double best = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            update.accept(i);
+        }
+        best = Math.max(best, UPDATES * 1_000_000_000.0 / (System.nanoTime() - start));
+    }
+    System.out.printf("%-40s %,10.0f updates/s%n", name, best);
+    return best;
+}
@@ -0,0 +1,314 @@
+package helper;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fades any number of PWM outputs from one scheduler thread, with easing curves and gamma correction.
+ * <p>
+ * Fading by setting the duty cycle in equal steps looks uneven, as the eye is much more sensitive to changes of
+ * dark light than of bright light. Here, a fade changes the perceived brightness between 0.0 and 1.0 along an
+ * {@link Easing} curve, and a gamma lookup table converts it into a duty cycle. The duty cycle is quantized to
+ * the resolution of the output, e.g. the whole percents of a Pi4J <code>Pwm</code> or the nanoseconds of a
+ * {@link HighResolutionPwm}, and only written when the quantized value changes. So the number of sysfs or register
+ * writes only depends on the number of steps the output can really show, and never exceeds the frame rate.
+ * <p>
+ * The scheduler thread updates all fading outputs at a fixed frame rate with absolute deadlines, and waits
+ * without using CPU while no fade is running. All methods are thread-safe.
+ */
+public class FadeEngine implements AutoCloseable {
+
+    /**
+     * Number of brightness steps of the gamma lookup table
+     */
+    private static final int GAMMA_STEPS = 4096;
+
+    /**
+     * Writes a duty cycle to an output, called on the scheduler thread.
+     */
+    @FunctionalInterface
+    public interface Output {
+        /**
+         * @param duty Duty cycle between 0 and the resolution of the output
+         */
+        void write(int duty);
+    }
+
+    /**
+     * Curves from the start to the end of a fade, for a time t between 0.0 and 1.0
+     */
+    public enum Easing {
+        LINEAR,
+        EASE_IN,
+        EASE_OUT,
+        EASE_IN_OUT,
+        SINE;
+
+        /**
+         * @param t Time since the start of the fade, between 0.0 and 1.0
+         * @return Progress of the fade, between 0.0 and 1.0
+         */
+        public double apply(double t) {
+            return switch (this) {
+                case LINEAR -> t;
+                case EASE_IN -> t * t * t;
+                case EASE_OUT -> 1 - (1 - t) * (1 - t) * (1 - t);
+                case EASE_IN_OUT -> t < 0.5 ? 4 * t * t * t : 1 - Math.pow(-2 * t + 2, 3) / 2;
+                case SINE -> (1 - Math.cos(Math.PI * t)) / 2;
+            };
+        }
+    }
+
+    private final long frameNanos;
+    private final double[] gammaTable;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long writes = 0;
+
+    /**
+     * State per output, guarded by this
+     */
+    private Output[] outputs = new Output[4];
+    private int[] resolutions = new int[4];
+    private int[] lastDuties = new int[4];
+    private double[] levels = new double[4];
+    private double[] fromLevels = new double[4];
+    private double[] toLevels = new double[4];
+    private long[] startTimes = new long[4];
+    private long[] durations = new long[4];
+    private Easing[] easings = new Easing[4];
+    private boolean[] fading = new boolean[4];
+    private int outputCount = 0;
+    private int activeFades = 0;
+    /**
+     * True while the scheduler writes the duty cycles of a frame outside the lock
+     */
+    private boolean writing = false;
+
+    /**
+     * Duty cycles to write in the current frame, filled by the scheduler thread while holding the lock
+     */
+    private int[] pendingDuties = new int[4];
+    private Output[] pendingOutputs = new Output[4];
+
+    /**
+     * Creates an engine with 100 frames per second and a gamma of 2.2.
+     */
+    public FadeEngine() {
+        this(100, 2.2);
+    }
+
+    /**
+     * @param frameRate Number of updates per second of the fading outputs
+     * @param gamma     Gamma to convert the brightness into a duty cycle, 1.0 for none
+     */
+    public FadeEngine(int frameRate, double gamma) {
+        this.frameNanos = 1_000_000_000L / frameRate;
+        this.gammaTable = new double[GAMMA_STEPS + 1];
+        for (int i = 0; i <= GAMMA_STEPS; i++) {
+            gammaTable[i] = Math.pow(i / (double) GAMMA_STEPS, gamma);
+        }
+        this.thread = Thread.ofPlatform().name("fade-engine").daemon().start(this::run);
+    }
+
+    /**
+     * Adds an output, which is set to off.
+     *
+     * @param resolution Highest duty cycle of the output, e.g. 100 for a Pi4J <code>Pwm</code> in percent,
+     *                   or the period in nanoseconds of a {@link HighResolutionPwm}
+     * @param output     Output to write the duty cycles to
+     * @return Index of the output, to start fades
+     */
+    public synchronized int addOutput(int resolution, Output output) {
+        if (outputCount == outputs.length) {
+            grow();
+        }
+        int index = outputCount++;
+        outputs[index] = output;
+        resolutions[index] = resolution;
+        lastDuties[index] = 0;
+        output.write(0);
+        writes++;
+        return index;
+    }
+
+    /**
+     * Starts a fade from the current brightness, a running fade of the output is replaced.
+     *
+     * @param output         Index of the output
+     * @param brightness     Brightness at the end of the fade, between 0.0 and 1.0
+     * @param durationMillis Duration of the fade
+     * @param easing         Curve of the fade
+     */
+    public synchronized void fade(int output, double brightness, long durationMillis, Easing easing) {
+        if (!fading[output]) {
+            fading[output] = true;
+            activeFades++;
+        }
+        fromLevels[output] = levels[output];
+        toLevels[output] = Math.clamp(brightness, 0.0, 1.0);
+        startTimes[output] = System.nanoTime();
+        durations[output] = Math.max(1, durationMillis * 1_000_000L);
+        easings[output] = easing;
+        notifyAll();
+    }
+
+    /**
+     * Sets the brightness immediately, a running fade of the output is stopped.
+     *
+     * @param output     Index of the output
+     * @param brightness Brightness between 0.0 and 1.0
+     */
+    public void set(int output, double brightness) {
+        fade(output, brightness, 0, Easing.LINEAR);
+    }
+
+    /**
+     * @param output Index of the output
+     * @return Current brightness, between 0.0 and 1.0
+     */
+    public synchronized double getBrightness(int output) {
+        return levels[output];
+    }
+
+    /**
+     * @param output Index of the output
+     * @return True while the output is fading
+     */
+    public synchronized boolean isFading(int output) {
+        return fading[output];
+    }
+
+    /**
+     * @return Number of duty cycles written to the outputs
+     */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Waits until all fades have ended and their last duty cycles have been written.
+     *
+     * @throws InterruptedException When the thread is interrupted while waiting
+     */
+    public synchronized void awaitFades() throws InterruptedException {
+        while (activeFades > 0 || writing) {
+            wait();
+        }
+    }
+
+    /**
+     * Stops the scheduler thread, the outputs keep their last duty cycle.
+     */
+    @Override
+    public void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long frame = System.nanoTime();
+        while (running) {
+            int changes;
+            Output[] changedOutputs;
+            int[] changedDuties;
+            synchronized (this) {
+                try {
+                    while (running && activeFades == 0) {
+                        wait();
+                        frame = System.nanoTime();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                changes = updateLevels(System.nanoTime());
+                changedOutputs = pendingOutputs;
+                changedDuties = pendingDuties;
+                writing = true;
+            }
+            // Write outside the lock, as a sysfs write can take a while
+            try {
+                for (int i = 0; i < changes; i++) {
+                    changedOutputs[i].write(changedDuties[i]);
+                }
+            } finally {
+                synchronized (this) {
+                    // Wake up the threads in awaitFades only after the last duty cycles have been written
+                    writing = false;
+                    if (activeFades == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+
+            frame += frameNanos;
+            long remaining;
+            while ((remaining = frame - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Calculates the brightness of all fading outputs, and collects the ones of which the duty cycle changes
+     */
+    private int updateLevels(long now) {
+        int changes = 0;
+        for (int output = 0; output < outputCount; output++) {
+            if (!fading[output]) {
+                continue;
+            }
+            double t = Math.min(1.0, (now - startTimes[output]) / (double) durations[output]);
+            double progress = easings[output].apply(t);
+            levels[output] = fromLevels[output] + (toLevels[output] - fromLevels[output]) * progress;
+            if (t >= 1.0) {
+                levels[output] = toLevels[output];
+                fading[output] = false;
+                activeFades--;
+            }
+            int duty = toDuty(levels[output], resolutions[output]);
+            if (duty != lastDuties[output]) {
+                lastDuties[output] = duty;
+                pendingOutputs[changes] = outputs[output];
+                pendingDuties[changes] = duty;
+                changes++;
+                writes++;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Looks up the brightness in the gamma table with linear interpolation, and quantizes it to the resolution
+     */
+    private int toDuty(double brightness, int resolution) {
+        double position = brightness * GAMMA_STEPS;
+        int index = Math.min(GAMMA_STEPS - 1, (int) position);
+        double fraction = position - index;
+        double duty = gammaTable[index] + (gammaTable[index + 1] - gammaTable[index]) * fraction;
+        return (int) Math.round(duty * resolution);
+    }
+
+    private void grow() {
+        int size = outputs.length * 2;
+        outputs = Arrays.copyOf(outputs, size);
+        resolutions = Arrays.copyOf(resolutions, size);
+        lastDuties = Arrays.copyOf(lastDuties, size);
+        levels = Arrays.copyOf(levels, size);
+        fromLevels = Arrays.copyOf(fromLevels, size);
+        toLevels = Arrays.copyOf(toLevels, size);
+        startTimes = Arrays.copyOf(startTimes, size);
+        durations = Arrays.copyOf(durations, size);
+        easings = Arrays.copyOf(easings, size);
+        fading = Arrays.copyOf(fading, size);
+        pendingDuties = Arrays.copyOf(pendingDuties, size);
+        pendingOutputs = Arrays.copyOf(pendingOutputs, size);
+    }
+}
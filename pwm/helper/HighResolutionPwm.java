@@ -0,0 +1,116 @@
+package helper;
+
+import com.pi4j.io.pwm.Pwm;
+
+/**
+ * Duty cycle of a hardware PWM channel in nanoseconds, instead of the whole percents of {@link Pwm#on(Integer)}.
+ * <p>
+ * With 101 levels, the lowest brightness steps of a LED are clearly visible, and a servo can only be positioned
+ * in steps of about 2 degrees. The Linux PWM sysfs interface takes the duty cycle in nanoseconds: at 1kHz that's
+ * a million levels, and at the 50Hz of a servo it's 20 million. The hardware of the Raspberry Pi is limited by its
+ * clock, but still gives far more than 16 bits.
+ * <p>
+ * The period is read or set once and cached, so every update is a single write of <code>duty_cycle</code>, and
+ * writing the same value again is skipped. The files stay open, see {@link SysfsPwmChannel}. Use it on a channel
+ * that was created with the hardware PWM config of Pi4J, or let it export and configure the channel itself.
+ */
+public class HighResolutionPwm implements AutoCloseable {
+
+    /**
+     * Resolution of {@link #setDuty16(int)}
+     */
+    public static final int MAX_DUTY_16 = 65_535;
+
+    private final SysfsPwmChannel channel;
+    private final long periodNanos;
+    private long dutyNanos;
+
+    /**
+     * Uses a hardware PWM channel that was created with Pi4J, which is switched on with a duty cycle of 0
+     * if it isn't on yet.
+     *
+     * @param pwm PWM created with <code>PwmType.HARDWARE</code>
+     */
+    public HighResolutionPwm(Pwm pwm) {
+        if (!pwm.isOn()) {
+            pwm.on(0);
+        }
+        this.channel = new SysfsPwmChannel(pwm.getChip(), pwm.getChannel());
+        this.periodNanos = channel.getPeriodNanos();
+        this.dutyNanos = channel.getDutyNanos();
+    }
+
+    /**
+     * Exports and enables a hardware PWM channel with a duty cycle of 0.
+     *
+     * @param chip        PWM chip, e.g. 0 for <code>/sys/class/pwm/pwmchip0</code>
+     * @param channel     Channel of the chip, e.g. 1 for GPIO19 on a Raspberry Pi 4
+     * @param frequencyHz Frequency of the PWM signal
+     */
+    public HighResolutionPwm(int chip, int channel, int frequencyHz) {
+        this.channel = new SysfsPwmChannel(chip, channel);
+        this.periodNanos = 1_000_000_000L / frequencyHz;
+        this.channel.setDutyNanos(0);
+        this.channel.setPeriodNanos(periodNanos);
+        this.channel.setEnabled(true);
+        this.dutyNanos = 0;
+    }
+
+    /**
+     * @return Cached period in nanoseconds
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return Duty cycle in nanoseconds that was written last
+     */
+    public long getDutyNanos() {
+        return dutyNanos;
+    }
+
+    /**
+     * Sets the duty cycle with a single write, which is skipped when it doesn't change.
+     *
+     * @param nanos Duty cycle in nanoseconds, limited to the period
+     */
+    public void setDutyNanos(long nanos) {
+        long duty = Math.clamp(nanos, 0, periodNanos);
+        if (duty == dutyNanos) {
+            return;
+        }
+        channel.setDutyNanos(duty);
+        dutyNanos = duty;
+    }
+
+    /**
+     * @param fraction Duty cycle between 0.0 (off) and 1.0 (on)
+     */
+    public void setDuty(double fraction) {
+        setDutyNanos(Math.round(fraction * periodNanos));
+    }
+
+    /**
+     * @param duty Duty cycle between 0 (off) and {@link #MAX_DUTY_16} (on)
+     */
+    public void setDuty16(int duty) {
+        setDutyNanos(periodNanos * duty / MAX_DUTY_16);
+    }
+
+    /**
+     * Sets the duty cycle to 0 and disables the channel.
+     */
+    public void off() {
+        setDutyNanos(0);
+        channel.setEnabled(false);
+    }
+
+    /**
+     * Closes the files of the channel, which keeps running with its last settings.
+     */
+    @Override
+    public void close() {
+        channel.close();
+    }
+}
@@ -0,0 +1,264 @@
+package helper;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Melody in the RTTTL ringtone format, compiled into frequency changes with a deadline each, and a player for it.
+ * <p>
+ * Switching the buzzer on and off for every note, and sleeping in between, makes the melody slower than written,
+ * as every sleep wakes up a bit late. Here, the notes are first compiled into primitive arrays of
+ * (frequency, deadline), with the deadlines relative to the start. The player waits for each absolute deadline,
+ * so an error never carries over to the next notes, and reports how late every change was.
+ * <p>
+ * A short silence is added at the end of every note, so repeated notes can be heard separately. A note can be tied
+ * to the next one by ending it with '_', e.g. <code>2c5_,8c5</code>, which leaves out the silence. When the tied
+ * notes have the same frequency, the frequency isn't written again, and a rest after a rest is skipped too.
+ * <p>
+ * RTTTL, e.g. <code>Scale:d=4,o=5,b=120:c,d,e,f,g,a,b,c6</code>, has a name, the defaults for the duration,
+ * octave and beats per minute, and the notes: an optional duration (1, 2, 4, 8, 16 or 32 for a whole, half,
+ * quarter... note), the note a to g with an optional '#', or p for a rest, an optional octave and an optional '.'
+ * to make it 1.5 times longer.
+ */
+public class Melody {
+
+    /**
+     * Park until this long before a deadline, then spin
+     */
+    private static final long SPIN_NANOS = 250_000;
+    private static final int[] SEMITONES = {9, 11, 0, 2, 4, 5, 7};
+
+    private final String name;
+    private final int[] frequencies;
+    private final long[] deadlines;
+    private final int[] notes;
+    private final int noteCount;
+    private final long durationNanos;
+
+    /**
+     * Sets the frequency of the buzzer, called by the player.
+     */
+    @FunctionalInterface
+    public interface Output {
+        /**
+         * @param frequency Frequency in Hz, 0 to switch the buzzer off
+         */
+        void setFrequency(int frequency);
+    }
+
+    private Melody(String name, int[] frequencies, long[] deadlines, int[] notes, int noteCount, long durationNanos) {
+        this.name = name;
+        this.frequencies = frequencies;
+        this.deadlines = deadlines;
+        this.notes = notes;
+        this.noteCount = noteCount;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Compiles an RTTTL melody with a silence of 20ms between the notes.
+     *
+     * @param rtttl Melody in the RTTTL format
+     * @return Compiled melody
+     */
+    public static Melody parse(String rtttl) {
+        return parse(rtttl, 20);
+    }
+
+    /**
+     * Compiles an RTTTL melody.
+     *
+     * @param rtttl     Melody in the RTTTL format
+     * @param gapMillis Silence at the end of every note that isn't tied to the next one
+     * @return Compiled melody
+     */
+    public static Melody parse(String rtttl, long gapMillis) {
+        String[] sections = rtttl.split(":", 3);
+        if (sections.length != 3) {
+            throw new IllegalArgumentException("RTTTL needs a name, defaults and notes separated by ':'");
+        }
+        int defaultDuration = 4;
+        int defaultOctave = 6;
+        int beatsPerMinute = 63;
+        for (String setting : sections[1].split(",")) {
+            String[] keyValue = setting.trim().split("=");
+            if (keyValue.length != 2) {
+                continue;
+            }
+            int value = Integer.parseInt(keyValue[1].trim());
+            switch (keyValue[0].trim().toLowerCase()) {
+                case "d" -> defaultDuration = value;
+                case "o" -> defaultOctave = value;
+                case "b" -> beatsPerMinute = value;
+                default -> throw new IllegalArgumentException("Unknown RTTTL setting: " + setting);
+            }
+        }
+
+        // A beat is a quarter note
+        long wholeNanos = 4 * 60_000_000_000L / beatsPerMinute;
+        long gapNanos = gapMillis * 1_000_000L;
+        String[] noteTexts = sections[2].split(",");
+        // At most a change to the note and to silence per note, and a final silence
+        int[] frequencies = new int[noteTexts.length * 2 + 1];
+        long[] deadlines = new long[noteTexts.length * 2 + 1];
+        int[] notes = new int[noteTexts.length * 2 + 1];
+        int events = 0;
+        int current = 0;
+        long time = 0;
+        for (int note = 0; note < noteTexts.length; note++) {
+            String text = noteTexts[note].trim().toLowerCase();
+            boolean tied = text.endsWith("_");
+            if (tied) {
+                text = text.substring(0, text.length() - 1);
+            }
+            int position = 0;
+            int duration = 0;
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                duration = duration * 10 + text.charAt(position++) - '0';
+            }
+            if (position == text.length()) {
+                throw new IllegalArgumentException("Missing note in '" + noteTexts[note] + "'");
+            }
+            char letter = text.charAt(position++);
+            int semitone;
+            if (letter == 'p') {
+                semitone = -1;
+            } else if (letter >= 'a' && letter <= 'g') {
+                semitone = SEMITONES[letter - 'a'];
+            } else {
+                throw new IllegalArgumentException("Unknown note in '" + noteTexts[note] + "'");
+            }
+            boolean dotted = false;
+            int octave = defaultOctave;
+            for (; position < text.length(); position++) {
+                char c = text.charAt(position);
+                if (c == '#') {
+                    semitone++;
+                } else if (c == '.') {
+                    dotted = true;
+                } else if (Character.isDigit(c)) {
+                    octave = c - '0';
+                } else {
+                    throw new IllegalArgumentException("Unknown character in '" + noteTexts[note] + "'");
+                }
+            }
+
+            long length = wholeNanos / (duration == 0 ? defaultDuration : duration);
+            if (dotted) {
+                length += length / 2;
+            }
+            int frequency = semitone < 0 ? 0 : frequencyOf(octave, semitone);
+            // Only write the frequency when it changes, e.g. not for a tied note of the same pitch
+            if (frequency != current) {
+                frequencies[events] = frequency;
+                deadlines[events] = time;
+                notes[events++] = note;
+                current = frequency;
+            }
+            time += length;
+            if (!tied && current != 0 && gapNanos < length) {
+                frequencies[events] = 0;
+                deadlines[events] = time - gapNanos;
+                notes[events++] = note;
+                current = 0;
+            }
+        }
+        if (current != 0) {
+            frequencies[events] = 0;
+            deadlines[events] = time;
+            notes[events++] = noteTexts.length - 1;
+        }
+        return new Melody(sections[0].trim(), Arrays.copyOf(frequencies, events), Arrays.copyOf(deadlines, events),
+                Arrays.copyOf(notes, events), noteTexts.length, time);
+    }
+
+    /**
+     * @return Name of the melody
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Number of notes, including rests
+     */
+    public int getNoteCount() {
+        return noteCount;
+    }
+
+    /**
+     * @return Number of frequency changes
+     */
+    public int size() {
+        return frequencies.length;
+    }
+
+    /**
+     * @param event Index of a frequency change
+     * @return Index of the note it belongs to
+     */
+    public int getNote(int event) {
+        return notes[event];
+    }
+
+    /**
+     * @param event Index of a frequency change
+     * @return Frequency in Hz, 0 for silence
+     */
+    public int getFrequency(int event) {
+        return frequencies[event];
+    }
+
+    /**
+     * @return Duration of the melody in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * Plays the melody on the calling thread and returns at its end.
+     *
+     * @param output Output to set the frequency
+     * @return Lateness of every frequency change in nanoseconds, from the deadline until the change was written
+     * @throws InterruptedException When the thread is interrupted, the buzzer is switched off
+     */
+    public long[] play(Output output) throws InterruptedException {
+        long[] lateness = new long[frequencies.length];
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < frequencies.length; i++) {
+                long deadline = start + deadlines[i];
+                waitUntil(deadline);
+                output.setFrequency(frequencies[i]);
+                lateness[i] = System.nanoTime() - deadline;
+            }
+            waitUntil(start + durationNanos);
+        } catch (InterruptedException e) {
+            output.setFrequency(0);
+            throw e;
+        }
+        return lateness;
+    }
+
+    /**
+     * Equal temperament with A4 at 440Hz
+     */
+    private static int frequencyOf(int octave, int semitone) {
+        int midi = 12 * (octave + 1) + semitone;
+        return (int) Math.round(440 * Math.pow(2, (midi - 69) / 12.0));
+    }
+
+    private static void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        while (deadline - System.nanoTime() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Plays PCM audio from a WAV file through a hardware PWM channel, e.g. the buzzer of the CrowPi.
+ * <p>
+ * The PWM runs at a carrier frequency far above what can be heard, and its duty cycle follows the audio samples,
+ * so the average voltage, which is what the buzzer and the ear follow, becomes the audio signal. The duty cycle is
+ * written in nanoseconds with {@link HighResolutionPwm}.
+ * <p>
+ * The WAV file is memory-mapped and read sample by sample while playing, so clips of any length don't need to be
+ * loaded first. A sysfs write takes too long to follow the 44.1kHz of a CD, so the audio is resampled with linear
+ * interpolation to an update rate the Raspberry Pi can keep up with, by default 8kHz, and mixed down to mono.
+ * <p>
+ * A dedicated timing thread writes every sample at its absolute deadline, and spins for the short time between
+ * two samples. When it's late by more than a sample, e.g. because it wasn't scheduled, the missed samples are
+ * skipped, so the audio keeps its pitch and tempo, and the underrun is counted.
+ */
+public class PcmPwmPlayer {
+
+    private static final int WAVE_FORMAT_PCM = 1;
+
+    private final HighResolutionPwm pwm;
+    private final int updateRate;
+    private final double volume;
+    private volatile long samplesWritten = 0;
+    private volatile long underruns = 0;
+    private volatile long samplesSkipped = 0;
+
+    /**
+     * @param pwm        Hardware PWM channel, with a frequency well above the audio, e.g. 40kHz
+     * @param updateRate Number of duty cycle updates per second, the sample rate of the played audio
+     * @param volume     Volume between 0.0 and 1.0
+     */
+    public PcmPwmPlayer(HighResolutionPwm pwm, int updateRate, double volume) {
+        this.pwm = pwm;
+        this.updateRate = updateRate;
+        this.volume = Math.clamp(volume, 0.0, 1.0);
+    }
+
+    /**
+     * @return Number of samples written in the current or last playback
+     */
+    public long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    /**
+     * @return Number of times the timing thread was more than a sample late
+     */
+    public long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * @return Number of samples skipped because of underruns
+     */
+    public long getSamplesSkipped() {
+        return samplesSkipped;
+    }
+
+    /**
+     * Plays a WAV file on a dedicated timing thread and waits until it's done.
+     *
+     * @param file WAV file with 8-bit or 16-bit PCM audio
+     * @return Statistics of the playback
+     * @throws IOException          When the file can't be read or isn't a supported WAV file, or when writing
+     *                              the duty cycle fails while playing
+     * @throws InterruptedException When the calling thread is interrupted, the playback is stopped
+     */
+    public Result play(Path file) throws IOException, InterruptedException {
+        ByteBuffer data;
+        Format format;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            format = readFormat(mapped, file);
+            data = mapped.slice(format.dataOffset, format.dataLength).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        samplesWritten = 0;
+        underruns = 0;
+        samplesSkipped = 0;
+        long[] elapsed = new long[1];
+        Throwable[] failure = new Throwable[1];
+        var thread = Thread.ofPlatform().name("pcm-pwm-player").priority(Thread.MAX_PRIORITY)
+                .start(() -> {
+                    try {
+                        elapsed[0] = playSamples(data, format);
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                        try {
+                            pwm.setDutyNanos(0);
+                        } catch (RuntimeException suppressed) {
+                            e.addSuppressed(suppressed);
+                        }
+                    }
+                });
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            thread.join();
+            throw e;
+        }
+        if (failure[0] != null) {
+            throw new IOException("Playback of " + file + " failed after " + samplesWritten + " samples: "
+                    + failure[0].getMessage(), failure[0]);
+        }
+        return new Result(format.sampleRate, format.channels, format.bits, samplesWritten, underruns,
+                samplesSkipped, samplesWritten * 1_000_000_000.0 / Math.max(1, elapsed[0]));
+    }
+
+    /**
+     * Writes one resampled value per update, returns the time it took
+     */
+    private long playSamples(ByteBuffer data, Format format) {
+        int frameSize = format.channels * format.bits / 8;
+        long frames = data.capacity() / frameSize;
+        long outputSamples = frames * updateRate / format.sampleRate;
+        long period = pwm.getPeriodNanos();
+        double step = format.sampleRate / (double) updateRate;
+
+        long start = System.nanoTime();
+        long sample = 0;
+        while (sample < outputSamples && !Thread.currentThread().isInterrupted()) {
+            long deadline = start + sample * 1_000_000_000L / updateRate;
+            long now;
+            while ((now = System.nanoTime()) - deadline < 0) {
+                Thread.onSpinWait();
+            }
+            long late = (now - deadline) * updateRate / 1_000_000_000L;
+            if (late > 0) {
+                // Skip to the sample of this moment, so the audio stays in time
+                underruns++;
+                samplesSkipped += late;
+                sample += late;
+                if (sample >= outputSamples) {
+                    break;
+                }
+            }
+
+            // Linear interpolation between the two frames around the position of this sample
+            double position = sample * step;
+            long frame = (long) position;
+            double fraction = position - frame;
+            double value = readFrame(data, format, frame, frameSize);
+            if (fraction > 0 && frame + 1 < frames) {
+                value += (readFrame(data, format, frame + 1, frameSize) - value) * fraction;
+            }
+            pwm.setDutyNanos(Math.round(period * (0.5 + 0.5 * volume * value)));
+            samplesWritten++;
+            sample++;
+        }
+        long elapsed = System.nanoTime() - start;
+        pwm.setDutyNanos(0);
+        return elapsed;
+    }
+
+    /**
+     * Reads all channels of a frame and mixes them to a value between -1.0 and 1.0
+     */
+    private static double readFrame(ByteBuffer data, Format format, long frame, int frameSize) {
+        int offset = (int) (frame * frameSize);
+        double sum = 0;
+        for (int channel = 0; channel < format.channels; channel++) {
+            if (format.bits == 8) {
+                // 8-bit samples are unsigned
+                sum += ((data.get(offset + channel) & 0xFF) - 128) / 128.0;
+            } else {
+                sum += data.getShort(offset + channel * 2) / 32768.0;
+            }
+        }
+        return sum / format.channels;
+    }
+
+    /**
+     * Finds the "fmt " and "data" chunks of a RIFF WAVE file
+     */
+    private static Format readFormat(ByteBuffer file, Path path) throws IOException {
+        if (file.capacity() < 12 || file.getInt(0) != 0x46464952 || file.getInt(8) != 0x45564157) {
+            throw new IOException(path + " is not a WAV file");
+        }
+        int channels = 0;
+        int sampleRate = 0;
+        int bits = 0;
+        long offset = 12;
+        while (offset + 8 <= file.capacity()) {
+            int id = file.getInt((int) offset);
+            // Sizes are unsigned, and streamed files often have 0xFFFFFFFF as the size of the data
+            long size = Integer.toUnsignedLong(file.getInt((int) offset + 4));
+            int body = (int) offset + 8;
+            long available = file.capacity() - body;
+            if (id == 0x20746D66) {
+                // "fmt "
+                if (size < 16 || available < 16) {
+                    throw new IOException(path + " has a format chunk that is too short");
+                }
+                if (file.getShort(body) != WAVE_FORMAT_PCM) {
+                    throw new IOException(path + " doesn't contain PCM audio");
+                }
+                channels = file.getShort(body + 2);
+                sampleRate = file.getInt(body + 4);
+                bits = file.getShort(body + 14);
+                if (channels <= 0 || sampleRate <= 0) {
+                    throw new IOException(path + " has " + channels + " channels at " + sampleRate + "Hz");
+                }
+            } else if (id == 0x61746164) {
+                // "data"
+                if (channels == 0) {
+                    throw new IOException(path + " has no format before the audio data");
+                }
+                if (bits != 8 && bits != 16) {
+                    throw new IOException(path + " has " + bits + "-bit samples, only 8 and 16 bits are supported");
+                }
+                return new Format(channels, sampleRate, bits, body, (int) Math.min(size, available));
+            }
+            // Chunks are padded to an even size, a size beyond the end of the file ends the loop
+            offset = body + Math.min(size + (size & 1), available + 1);
+        }
+        throw new IOException(path + " contains no audio data");
+    }
+
+    private record Format(int channels, int sampleRate, int bits, int dataOffset, int dataLength) {
+    }
+
+    /**
+     * Statistics of a playback
+     *
+     * @param fileSampleRate Sample rate of the file
+     * @param channels       Number of channels of the file, which are mixed to mono
+     * @param bits           Bits per sample of the file
+     * @param samplesWritten Number of duty cycle updates
+     * @param underruns      Number of times the timing thread was more than a sample late
+     * @param samplesSkipped Number of samples skipped because of underruns
+     * @param achievedRate   Duty cycle updates per second that were really written
+     */
+    public record Result(int fileSampleRate, int channels, int bits, long samplesWritten, long underruns,
+                         long samplesSkipped, double achievedRate) {
+    }
+}
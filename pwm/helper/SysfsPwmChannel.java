@@ -0,0 +1,168 @@
+package helper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hardware PWM channel of the Linux sysfs interface, with the <code>period</code> and <code>duty_cycle</code> files
+ * kept open for fast updates.
+ * <p>
+ * The linuxfs provider of Pi4J writes every change with <code>Files.writeString</code>, which opens the file,
+ * creates a String and an encoder for the number, writes it and closes the file again. Here, both files are opened
+ * once as a {@link FileChannel}, every number is formatted into one reused direct {@link ByteBuffer}, and written
+ * with a positional write at offset 0, which is one system call without allocating anything. A sysfs attribute
+ * takes each write as the complete new value.
+ * <p>
+ * This class is not thread-safe, as all writes share the buffer.
+ */
+public class SysfsPwmChannel implements AutoCloseable {
+
+    private static final String PWM_PATH = "/sys/class/pwm/";
+
+    private final Path channelPath;
+    private final FileChannel period;
+    private final FileChannel dutyCycle;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(24);
+    private long periodNanos;
+    private long dutyNanos;
+
+    /**
+     * Opens a channel, which is exported first if needed, and keeps its current period and duty cycle.
+     *
+     * @param chip    PWM chip, e.g. 0 for <code>/sys/class/pwm/pwmchip0</code>
+     * @param channel Channel of the chip
+     */
+    public SysfsPwmChannel(int chip, int channel) {
+        this.channelPath = Path.of(PWM_PATH + "pwmchip" + chip + "/pwm" + channel);
+        FileChannel openedPeriod = null;
+        FileChannel openedDutyCycle = null;
+        try {
+            if (!Files.exists(channelPath)) {
+                Files.writeString(Path.of(PWM_PATH + "pwmchip" + chip + "/export"), String.valueOf(channel));
+                waitForUdev(channelPath.resolve("duty_cycle"));
+            }
+            openedPeriod = FileChannel.open(channelPath.resolve("period"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            openedDutyCycle = FileChannel.open(channelPath.resolve("duty_cycle"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.periodNanos = Long.parseLong(Files.readString(channelPath.resolve("period")).trim());
+            this.dutyNanos = Long.parseLong(Files.readString(channelPath.resolve("duty_cycle")).trim());
+        } catch (IOException | NumberFormatException e) {
+            // Don't leak the files that were already opened
+            if (openedPeriod != null) {
+                closeQuietly(openedPeriod, "period");
+            }
+            if (openedDutyCycle != null) {
+                closeQuietly(openedDutyCycle, "duty_cycle");
+            }
+            throw new IllegalStateException("Failed to open PWM channel " + channelPath, e);
+        }
+        this.period = openedPeriod;
+        this.dutyCycle = openedDutyCycle;
+    }
+
+    /**
+     * @return Period in nanoseconds that was read or written last
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return Duty cycle in nanoseconds that was read or written last
+     */
+    public long getDutyNanos() {
+        return dutyNanos;
+    }
+
+    /**
+     * Sets the period, the duty cycle is shortened first if it would be longer than the new period.
+     *
+     * @param nanos Period in nanoseconds
+     */
+    public void setPeriodNanos(long nanos) {
+        if (dutyNanos > nanos) {
+            setDutyNanos(0);
+        }
+        write(period, nanos);
+        periodNanos = nanos;
+    }
+
+    /**
+     * Sets the duty cycle with one write.
+     *
+     * @param nanos Duty cycle in nanoseconds, at most the period
+     */
+    public void setDutyNanos(long nanos) {
+        write(dutyCycle, nanos);
+        dutyNanos = nanos;
+    }
+
+    /**
+     * @param enabled True to start the PWM signal, false to stop it
+     */
+    public void setEnabled(boolean enabled) {
+        try {
+            Files.writeString(channelPath.resolve("enable"), enabled ? "1" : "0");
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to " + (enabled ? "enable " : "disable ") + channelPath, e);
+        }
+    }
+
+    /**
+     * Closes the files, the channel keeps running with its last settings.
+     */
+    @Override
+    public void close() {
+        closeQuietly(period, "period");
+        closeQuietly(dutyCycle, "duty_cycle");
+    }
+
+    /**
+     * Closes one of the files, a failure is only reported, so the other file is still closed
+     */
+    private void closeQuietly(FileChannel file, String name) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close " + name + " of PWM channel " + channelPath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats the number as decimal digits at the end of the buffer, and writes them at position 0 of the file
+     */
+    private void write(FileChannel file, long value) {
+        buffer.clear();
+        int position = buffer.capacity();
+        long remaining = value;
+        do {
+            buffer.put(--position, (byte) ('0' + remaining % 10));
+            remaining /= 10;
+        } while (remaining > 0);
+        buffer.position(position);
+        try {
+            file.write(buffer, 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write " + value + " to " + channelPath, e);
+        }
+    }
+
+    /**
+     * After an export, udev needs a moment to make the files of the channel writable
+     */
+    private static void waitForUdev(Path file) {
+        for (int i = 0; i < 100 && !Files.isWritable(file); i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -11,12 +11,18 @@
 //DEPS org.slf4j:slf4j-simple:2.0.17
 //DEPS com.pi4j:pi4j-core:4.0.0
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
+//SOURCES helper/RegisterBus.java
+//SOURCES helper/SpiMessageBatch.java
+//SOURCES helper/RecordingRegisterBus.java
 
 import com.pi4j.Pi4J;
 import com.pi4j.io.spi.Spi;
 import com.pi4j.io.spi.SpiBus;
 import com.pi4j.io.spi.SpiChipSelect;
 import com.pi4j.io.spi.SpiMode;
+import helper.RecordingRegisterBus;
+import helper.RegisterBus;
+import helper.SpiMessageBatch;
 
 import java.util.Arrays;
 import java.util.List;
@@ -34,11 +40,23 @@ import java.util.Random;
  * <p>
  * From the terminal, in the `spi` directory, start this example with:
  * <code>jbang LedMatrix.java</code>
- *
+ * <p>
+ * All register writes are queued and flushed in one multi-message SPI transfer with {@link SpiMessageBatch},
+ * so a full frame of 8 rows costs one system call instead of eight. If the spidev device can't be opened
+ * directly, the example falls back to one Pi4J <code>spi.write</code> per register.
+ * <p>
+ * To measure the frame throughput without a Raspberry Pi, run the demo modes against an in-process
+ * stand-in of the matrix that records every SPI transaction:
+ * <code>jbang LedMatrix.java --benchmark</code>
  */
-private static Spi spi;
+private static RegisterBus bus;
+
+void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("--benchmark")) {
+        benchmark();
+        return;
+    }
 
-void main() throws Exception {
     var pi4j = Pi4J.newAutoContext();
 
     // Initialize SPI
@@ -52,28 +70,27 @@ void main() throws Exception {
             .baud(Spi.DEFAULT_BAUD)
             .mode(SpiMode.MODE_0)
             .build();
-    spi = pi4j.create(spiConfig);
+    var spi = pi4j.create(spiConfig);
+
+    try {
+        bus = new SpiMessageBatch(SpiBus.BUS_0.getBus(), SpiChipSelect.CS_0.getChipSelect(),
+                SpiMode.MODE_0.getMode(), Spi.DEFAULT_BAUD, 16);
+        System.out.println("Register writes are batched in one SPI transfer per frame");
+    } catch (Exception ex) {
+        System.err.println("Batched SPI not available, writing registers one by one: " + ex.getMessage());
+        bus = RegisterBus.unbatched(spi);
+    }
 
-    spi.write(SpiCommand.TEST.getValue(), (byte) 0x01);
+    writeRegister(SpiCommand.TEST.getValue(), (byte) 0x01);
     System.out.println("Test mode all on");
     Thread.sleep(1000);
 
-    spi.write(SpiCommand.TEST.getValue(), (byte) 0x00);
+    writeRegister(SpiCommand.TEST.getValue(), (byte) 0x00);
     System.out.println("Test mode all off");
     Thread.sleep(1000);
 
-    spi.write(SpiCommand.DECODE_MODE.getValue(), (byte) 0x00);
-    System.out.println("Use all bits");
-
-    spi.write(SpiCommand.BRIGHTNESS.getValue(), (byte) 0x08);
-    System.out.println("Changed brightness to medium level"
-            + " (0x00 lowest, 0x0F highest)");
-
-    spi.write(SpiCommand.SCAN_LIMIT.getValue(), (byte) 0x0f);
-    System.out.println("Configured to scan all digits");
-
-    spi.write(SpiCommand.SHUTDOWN_MODE.getValue(), (byte) 0x01);
-    System.out.println("Woke up the MAX7219, is off on startup");
+    initMatrix();
+    System.out.println("Configured decode mode, brightness, scan limit and woke up the MAX7219");
 
     allOff();
 
@@ -90,19 +107,61 @@ void main() throws Exception {
 
     allOff();
 
+    bus.close();
     pi4j.shutdown();
 
     System.out.println("Finished");
 }
 
+/**
+ * Use all bits, medium brightness (0x00 lowest, 0x0F highest), scan all digits,
+ * and wake up the MAX7219 as it's off on startup.
+ */
+public static void initMatrix() {
+    queueRegister(SpiCommand.DECODE_MODE.getValue(), (byte) 0x00);
+    queueRegister(SpiCommand.BRIGHTNESS.getValue(), (byte) 0x08);
+    queueRegister(SpiCommand.SCAN_LIMIT.getValue(), (byte) 0x0f);
+    queueRegister(SpiCommand.SHUTDOWN_MODE.getValue(), (byte) 0x01);
+    flushRegisters();
+}
+
+/**
+ * Queue a register write, which is only guaranteed to be sent to the matrix with the next {@link #flushRegisters()}.
+ *
+ * @param register Register address
+ * @param value    Register value
+ */
+public static void queueRegister(byte register, byte value) {
+    bus.queue(register, value);
+}
+
+/**
+ * Send all queued register writes, in one SPI transfer when batching is available.
+ */
+public static void flushRegisters() {
+    bus.flush();
+}
+
+/**
+ * Write one register immediately.
+ *
+ * @param register Register address
+ * @param value    Register value
+ */
+public static void writeRegister(byte register, byte value) {
+    queueRegister(register, value);
+    flushRegisters();
+}
+
 /**
  * Loop through all the rows and put all the LEDs off.
  */
 public static void allOff() {
     try {
         for (int row = 1; row <= 8; row++) {
-            spi.write((byte) row, (byte) 0x00);
+            queueRegister((byte) row, (byte) 0x00);
         }
+        flushRegisters();
     } catch (Exception ex) {
         System.err.println("Error during row demo: " + ex.getMessage());
     }
@@ -118,8 +177,10 @@ public static void showOneByOne(int waitBetween) {
         for (int row = 1; row <= 8; row++) {
             System.out.println("One by one on row " + row);
             for (int led = 0; led < 8; led++) {
-                allOff();
-                spi.write((byte) row, (byte) (1 << led));
+                for (int r = 1; r <= 8; r++) {
+                    queueRegister((byte) r, r == row ? (byte) (1 << led) : (byte) 0x00);
+                }
+                flushRegisters();
                 Thread.sleep(waitBetween);
             }
         }
@@ -137,8 +198,9 @@ public static void showRows(int waitBetween) {
     try {
         for (int onRow = 1; onRow <= 8; onRow++) {
             for (int row = 1; row <= 8; row++) {
-                spi.write((byte) row, (onRow == row ? (byte) 0xff : (byte) 0x00));
+                queueRegister((byte) row, (onRow == row ? (byte) 0xff : (byte) 0x00));
             }
+            flushRegisters();
             System.out.println("Row " + onRow + " is on");
             Thread.sleep(waitBetween);
         }
@@ -156,8 +218,9 @@ public static void showCols(int waitBetween) {
     try {
         for (int onColumn = 0; onColumn < 8; onColumn++) {
             for (int row = 1; row <= 8; row++) {
-                spi.write((byte) row, (byte) (1 << (8 - onColumn)));
+                queueRegister((byte) row, (byte) (1 << (8 - onColumn)));
             }
+            flushRegisters();
             System.out.println("Col " + onColumn + " is on");
             Thread.sleep(waitBetween);
         }
@@ -175,13 +238,9 @@ public static void showCols(int waitBetween) {
 public static void showRandomOutput(int numberOfLoops, int waitBetween) {
     try {
         Random r = new Random();
-        int min = 0;
-        int max = 255;
 
         for (int loop = 1; loop <= numberOfLoops; loop++) {
-            for (int row = 1; row <= 8; row++) {
-                spi.write((byte) row, (byte) (r.nextInt((max - min) + 1) + min));
-            }
+            showRandomFrame(r);
             System.out.println("Random effect " + loop);
             Thread.sleep(waitBetween);
         }
@@ -190,6 +249,21 @@ public static void showRandomOutput(int numberOfLoops, int waitBetween) {
     }
 }
 
+/**
+ * Output one frame of random enabled LEDs.
+ *
+ * @param r Random generator
+ */
+public static void showRandomFrame(Random r) {
+    int min = 0;
+    int max = 255;
+
+    for (int row = 1; row <= 8; row++) {
+        queueRegister((byte) row, (byte) (r.nextInt((max - min) + 1) + min));
+    }
+    flushRegisters();
+}
+
 /**
  * Show all the images as defined in the enum.
  *
@@ -215,8 +289,9 @@ public static void showAllImages(int waitBetween) {
 public static void showImage(Image image) {
     try {
         for (int i = 0; i < 8; i++) {
-            spi.write((byte) (i + 1), image.getRows().get(i));
+            queueRegister((byte) (i + 1), image.getRows().get(i));
         }
+        flushRegisters();
     } catch (Exception ex) {
         System.err.println("Error during images: " + ex.getMessage());
     }
@@ -247,8 +322,9 @@ public static void showAllAsciiCharacters(int waitBetween) {
 public static void showAsciiCharacter(AsciiCharacter asciiCharacter) {
     try {
         for (int row = 0; row < 8; row++) {
-            spi.write((byte) (row + 1), asciiCharacter.getRows().get(row));
+            queueRegister((byte) (row + 1), asciiCharacter.getRows().get(row));
         }
+        flushRegisters();
     } catch (Exception ex) {
         System.err.println("Error during images: " + ex.getMessage());
     }
@@ -287,8 +363,9 @@ public static void scrollAsciiCharacter(AsciiCharacter asciiCharacter, int waitB
                 } else {
                     rowValue = 0xFF & (rowValue << (move - 8));
                 }
-                spi.write((byte) (row + 1), (byte) rowValue);
+                queueRegister((byte) (row + 1), (byte) rowValue);
             }
+            flushRegisters();
             Thread.sleep(waitBetweenMove);
         }
     } catch (Exception ex) {
@@ -296,6 +373,77 @@ public static void scrollAsciiCharacter(AsciiCharacter asciiCharacter, int waitB
     }
 }
 
+/**
+ * Run the showImage, scroll and random modes against a {@link RecordingRegisterBus}, both batched and
+ * unbatched, and report the frames per second, bytes per frame and transactions (system calls on the
+ * real device) per frame.
+ */
+public static void benchmark() {
+    // Roughly the cost of one spidev ioctl on a Raspberry Pi
+    long transactionCostNanos = 20_000;
+    int frames = 20_000;
+
+    System.out.println("Benchmark with " + frames + " frames per mode and "
+            + (transactionCostNanos / 1000) + "µs simulated cost per SPI transaction");
+    System.out.printf("%-10s %-10s %12s %15s %22s%n",
+            "Mode", "Bus", "Frames/s", "Bytes/frame", "Transactions/frame");
+
+    for (boolean batched : new boolean[]{true, false}) {
+        var recorder = new RecordingRegisterBus(batched, transactionCostNanos, 1024);
+        bus = recorder;
+        String busName = batched ? "batched" : "unbatched";
+
+        // Warm up and check that the reconstructed display matches the image
+        initMatrix();
+        showImage(Image.HEART);
+        for (int row = 0; row < 8; row++) {
+            if (recorder.getRow(row) != Image.HEART.getRows().get(row)) {
+                System.out.print(recorder.render());
+                throw new IllegalStateException("Row " + row + " of the " + busName
+                        + " display doesn't match the HEART image");
+            }
+        }
+        if (batched) {
+            System.out.println("Reconstructed display after showImage(HEART):");
+            System.out.print(recorder.render());
+        }
+
+        recorder.reset();
+        long start = System.nanoTime();
+        var images = Image.values();
+        for (int i = 0; i < frames; i++) {
+            showImage(images[i % images.length]);
+        }
+        printBenchmarkResult("showImage", busName, recorder, System.nanoTime() - start);
+
+        recorder.reset();
+        start = System.nanoTime();
+        var characters = AsciiCharacter.values();
+        int character = 0;
+        while (recorder.getFrames() < frames) {
+            scrollAsciiCharacter(characters[character++ % characters.length], 0);
+        }
+        printBenchmarkResult("scroll", busName, recorder, System.nanoTime() - start);
+
+        recorder.reset();
+        start = System.nanoTime();
+        var random = new Random(42);
+        for (int i = 0; i < frames; i++) {
+            showRandomFrame(random);
+        }
+        printBenchmarkResult("random", busName, recorder, System.nanoTime() - start);
+    }
+}
+
+private static void printBenchmarkResult(String mode, String busName, RecordingRegisterBus recorder, long nanos) {
+    double frames = recorder.getFrames();
+    System.out.printf("%-10s %-10s %12.0f %15.1f %22.1f%n",
+            mode, busName,
+            frames / (nanos / 1_000_000_000.0),
+            recorder.getBytes() / frames,
+            recorder.getTransactions() / frames);
+}
+
 public enum SpiCommand {
     DECODE_MODE((byte) 0x09),
     BRIGHTNESS((byte) 0x0A),
@@ -15,6 +15,8 @@
 //DEPS com.pi4j:pi4j-plugin-ffm:4.0.0
 //DEPS com.pi4j:pi4j-drivers:0.0.1-SNAPSHOT
 
+//SOURCES ../i2c/helper/Bmx280Sampler.java
+
 import com.pi4j.Pi4J;
 import com.pi4j.drivers.sensor.environment.bmx280.Bmx280Driver;
 import com.pi4j.io.gpio.digital.DigitalOutput;
@@ -22,6 +24,8 @@ import com.pi4j.io.gpio.digital.DigitalState;
 import com.pi4j.io.spi.Spi;
 import com.pi4j.io.spi.SpiConfigBuilder;
 import com.pi4j.io.spi.SpiMode;
+import helper.Bmx280Sampler;
+import helper.Bmx280Sampler.Quantity;
 
 /**
  * Example code to read the temperature, humidity and pressure from a BME280 sensor, on an Adafruit board via I2C and SPI.
@@ -30,6 +34,10 @@ import com.pi4j.io.spi.SpiMode;
  * From the terminal, in the `spi` directory, start this example with:
  * <code>jbang TemperatureHumidityPressure.java</code>
  * <p>
+ * The sensor is read every 250ms by {@link Bmx280Sampler} on a virtual thread, which keeps the minimum, maximum,
+ * mean and standard deviation of the last 10 seconds, minute and 10 minutes. Every 2 seconds, a snapshot of them
+ * is printed.
+ * <p>
  * Based on:
  * <ul>
  *  <li>https://github.com/Pi4J/pi4j-example-devices/blob/master/src/main/java/com/pi4j/devices/bmp280/README.md</li>
@@ -50,6 +58,8 @@ import com.pi4j.io.spi.SpiMode;
  */
 static final int SPI_BUS = 0;
 static final int SPI_CSB = 21;
+static final long INTERVAL_MILLIS = 250;
+static final long[] WINDOWS_MILLIS = {10_000, 60_000, 600_000};
 
 void main() throws Exception {
     try {
@@ -70,16 +80,12 @@ void main() throws Exception {
                 .build());
         var sensor = new Bmx280Driver(spi, csb);
 
-        for (int counter = 0; counter < 10; counter++) {
-            IO.println("**************************************");
-            IO.println("Reading values, loop " + (counter + 1));
-
-            var measurement = sensor.readMeasurement();
-            IO.println("Humidity : " + measurement.getHumidity());
-            IO.println("Pressure : " + measurement.getPressure());
-            IO.println("Temperature : " + measurement.getTemperature());
-
-            Thread.sleep(2_000);
+        // Sample on a virtual thread, and print the statistics of the last 10 seconds, minute and 10 minutes
+        try (var sampler = new Bmx280Sampler(sensor, INTERVAL_MILLIS, WINDOWS_MILLIS)) {
+            for (int counter = 0; counter < 10; counter++) {
+                Thread.sleep(2_000);
+                printSnapshot(counter + 1, sampler.getSnapshot());
+            }
         }
 
         sensor.close();
@@ -91,4 +97,21 @@ void main() throws Exception {
         IO.println("**************************************");
         IO.println("Finished");
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Prints the latest values and the statistics per window
+ */
+private static void printSnapshot(int loop, Bmx280Sampler.Snapshot snapshot) {
+    IO.println("**************************************");
+    IO.println("Snapshot " + loop + ", " + snapshot.samples() + " samples, " + snapshot.errors() + " errors");
+    for (var quantity : Quantity.values()) {
+        IO.println(quantity + " : " + snapshot.latest(quantity));
+        for (int window = 0; window < WINDOWS_MILLIS.length; window++) {
+            var statistics = snapshot.statistics(window, quantity);
+            IO.println(String.format("  last %4ds: min %.2f, max %.2f, mean %.2f, stddev %.3f (%d samples)",
+                    statistics.windowMillis() / 1000, statistics.min(), statistics.max(),
+                    statistics.mean(), statistics.stddev(), statistics.count()));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package helper;
+
+/**
+ * In-process stand-in for a MAX7219 8x8 LED matrix on SPI, to run the matrix code without a Raspberry Pi.
+ * <p>
+ * Every SPI transaction (a system call on a real device) is recorded with its timestamp and the
+ * register writes it contains. The written registers are applied the same way the MAX7219 does, so
+ * the displayed 8x8 state can be checked after each frame.
+ * <p>
+ * With <code>batched</code> set, all queued registers are one transaction on {@link #flush()}, like
+ * {@link SpiMessageBatch}. Otherwise every register is its own transaction, like
+ * {@link RegisterBus#unbatched(com.pi4j.io.spi.Spi)}. An optional cost per transaction can be
+ * busy-waited to model the system call overhead of the real device.
+ */
+public class RecordingRegisterBus implements RegisterBus {
+
+    private static final int REGISTER_DIGIT_0 = 0x01;
+    private static final int REGISTER_DIGIT_7 = 0x08;
+    private static final int REGISTER_DECODE_MODE = 0x09;
+    private static final int REGISTER_INTENSITY = 0x0A;
+    private static final int REGISTER_SCAN_LIMIT = 0x0B;
+    private static final int REGISTER_SHUTDOWN = 0x0C;
+    private static final int REGISTER_DISPLAY_TEST = 0x0F;
+
+    private final boolean batched;
+    private final long transactionCostNanos;
+
+    /**
+     * Recorded log, limited to the capacity given in the constructor
+     */
+    private final long[] transactionTimestamps;
+    private final int[] transactionFirstMessage;
+    private final byte[] messageRegisters;
+    private final byte[] messageValues;
+
+    /**
+     * Queued, not yet submitted messages
+     */
+    private final byte[] pendingRegisters = new byte[SpiMessageBatch.MAX_MESSAGES];
+    private final byte[] pendingValues = new byte[SpiMessageBatch.MAX_MESSAGES];
+    private int pending = 0;
+
+    /**
+     * Reconstructed state of the MAX7219
+     */
+    private final byte[] rows = new byte[8];
+    private int decodeMode = 0;
+    private int intensity = 0;
+    private int scanLimit = 0;
+    private boolean shutdown = true;
+    private boolean displayTest = false;
+
+    private long transactions = 0;
+    private long messages = 0;
+    private long frames = 0;
+
+    /**
+     * @param batched              True to submit all queued registers as one transaction on flush
+     * @param transactionCostNanos Simulated time per transaction, 0 to only measure the Java side
+     * @param logCapacity          Number of transactions and messages kept in the log
+     */
+    public RecordingRegisterBus(boolean batched, long transactionCostNanos, int logCapacity) {
+        this.batched = batched;
+        this.transactionCostNanos = transactionCostNanos;
+        this.transactionTimestamps = new long[logCapacity];
+        this.transactionFirstMessage = new int[logCapacity];
+        this.messageRegisters = new byte[logCapacity];
+        this.messageValues = new byte[logCapacity];
+    }
+
+    @Override
+    public void queue(byte register, byte value) {
+        if (pending == pendingRegisters.length) {
+            submit();
+        }
+        pendingRegisters[pending] = register;
+        pendingValues[pending] = value;
+        pending++;
+        if (!batched) {
+            submit();
+        }
+    }
+
+    @Override
+    public void flush() {
+        submit();
+        frames++;
+    }
+
+    /**
+     * Clears the log and the counters, the display state is kept.
+     */
+    public void reset() {
+        transactions = 0;
+        messages = 0;
+        frames = 0;
+    }
+
+    /**
+     * @return Number of transactions (system calls on a real device) since the last reset
+     */
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * @return Number of register writes since the last reset
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return Number of bytes sent over the bus since the last reset
+     */
+    public long getBytes() {
+        return messages * 2;
+    }
+
+    /**
+     * @return Number of flushes, which the matrix code does once per frame, since the last reset
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return Number of transactions available in the log
+     */
+    public int getLoggedTransactions() {
+        return (int) Math.min(transactions, transactionTimestamps.length);
+    }
+
+    /**
+     * @param transaction Index in the log
+     * @return {@link System#nanoTime()} when the transaction was submitted
+     */
+    public long getTimestamp(int transaction) {
+        return transactionTimestamps[transaction];
+    }
+
+    /**
+     * @param transaction Index in the log
+     * @return Index of the first message of the transaction in the message log
+     */
+    public int getFirstMessage(int transaction) {
+        return transactionFirstMessage[transaction];
+    }
+
+    /**
+     * @param message Index in the message log
+     * @return Register address of the message
+     */
+    public byte getRegister(int message) {
+        return messageRegisters[message];
+    }
+
+    /**
+     * @param message Index in the message log
+     * @return Register value of the message
+     */
+    public byte getValue(int message) {
+        return messageValues[message];
+    }
+
+    /**
+     * @param row Row index (0-7)
+     * @return Displayed LEDs of the row, most significant bit is the leftmost LED
+     */
+    public byte getRow(int row) {
+        return rows[row];
+    }
+
+    /**
+     * @param x Column (0-7)
+     * @param y Row (0-7)
+     * @return True if the LED is lit, taking into account shutdown, test and scan limit
+     */
+    public boolean isOn(int x, int y) {
+        if (displayTest) {
+            return true;
+        }
+        if (shutdown || y > scanLimit) {
+            return false;
+        }
+        return (rows[y] & (0x80 >> x)) != 0;
+    }
+
+    public int getIntensity() {
+        return intensity;
+    }
+
+    public int getDecodeMode() {
+        return decodeMode;
+    }
+
+    /**
+     * @return The displayed state as 8 lines of text, with '#' for a lit LED
+     */
+    public String render() {
+        var sb = new StringBuilder();
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                sb.append(isOn(x, y) ? '#' : '.');
+            }
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    private void submit() {
+        if (pending == 0) {
+            return;
+        }
+        if (transactionCostNanos > 0) {
+            long start = System.nanoTime();
+            while (System.nanoTime() - start < transactionCostNanos) {
+                // Busy wait, like a blocking system call would take the time of the caller
+            }
+        }
+        if (transactions < transactionTimestamps.length) {
+            int index = (int) transactions;
+            transactionTimestamps[index] = System.nanoTime();
+            transactionFirstMessage[index] = (int) Math.min(messages, messageRegisters.length);
+        }
+        for (int i = 0; i < pending; i++) {
+            if (messages < messageRegisters.length) {
+                messageRegisters[(int) messages] = pendingRegisters[i];
+                messageValues[(int) messages] = pendingValues[i];
+            }
+            messages++;
+            apply(pendingRegisters[i] & 0x0F, pendingValues[i] & 0xFF);
+        }
+        transactions++;
+        pending = 0;
+    }
+
+    /**
+     * The MAX7219 only decodes the lower 4 bits of the address byte
+     */
+    private void apply(int register, int value) {
+        if (register >= REGISTER_DIGIT_0 && register <= REGISTER_DIGIT_7) {
+            rows[register - REGISTER_DIGIT_0] = (byte) value;
+        } else if (register == REGISTER_DECODE_MODE) {
+            decodeMode = value;
+        } else if (register == REGISTER_INTENSITY) {
+            intensity = value & 0x0F;
+        } else if (register == REGISTER_SCAN_LIMIT) {
+            scanLimit = value & 0x07;
+        } else if (register == REGISTER_SHUTDOWN) {
+            shutdown = (value & 0x01) == 0;
+        } else if (register == REGISTER_DISPLAY_TEST) {
+            displayTest = (value & 0x01) != 0;
+        }
+    }
+}
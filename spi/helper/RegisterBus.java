@@ -0,0 +1,49 @@
+package helper;
+
+import com.pi4j.io.spi.Spi;
+
+/**
+ * Output for devices that are controlled by writing two-byte register messages, like the MAX7219.
+ * Register writes are queued and only guaranteed to be sent to the device on {@link #flush()}.
+ */
+public interface RegisterBus extends AutoCloseable {
+
+    /**
+     * Queues a register write.
+     *
+     * @param register Register address
+     * @param value    Register value
+     */
+    void queue(byte register, byte value);
+
+    /**
+     * Sends all queued register writes to the device.
+     */
+    void flush();
+
+    @Override
+    default void close() {
+        // Nothing to release by default
+    }
+
+    /**
+     * Creates a bus that writes every register immediately with its own {@link Spi#write(byte...)} call,
+     * so {@link #flush()} has nothing left to do.
+     *
+     * @param spi Pi4J SPI instance
+     * @return Unbatched bus
+     */
+    static RegisterBus unbatched(Spi spi) {
+        return new RegisterBus() {
+            @Override
+            public void queue(byte register, byte value) {
+                spi.write(register, value);
+            }
+
+            @Override
+            public void flush() {
+                // Every register has already been written
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+package helper;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+
+/**
+ * Queues independent two-byte SPI messages and submits them to the spidev driver with one
+ * <code>SPI_IOC_MESSAGE(n)</code> ioctl, releasing chip select between every message.
+ * <p>
+ * A MAX7219 latches a register on the rising edge of CS, so each register write must be its own
+ * CS-framed message. Writing them one by one with <code>spi.write</code> costs one system call per
+ * register, eight for a full frame. Queued in this batch, the same frame is a single system call.
+ * <p>
+ * The device is opened directly with the Foreign Function &amp; Memory API, next to the Pi4J
+ * {@link com.pi4j.io.spi.Spi} instance that can still be used for the other communication.
+ * This requires a 64-bit OS and Java 22 or newer. An instance is not thread-safe.
+ */
+public class SpiMessageBatch implements RegisterBus {
+
+    /**
+     * The ioctl size field is 14 bits, so at most 511 transfers of 32 bytes fit in one request.
+     */
+    public static final int MAX_MESSAGES = 511;
+
+    private static final int MESSAGE_LENGTH = 2;
+    private static final int O_RDWR = 0x02;
+    private static final long SPI_IOC_WR_MODE = 0x40016B01L;
+
+    /**
+     * struct spi_ioc_transfer from linux/spi/spidev.h
+     */
+    private static final StructLayout SPI_IOC_TRANSFER = MemoryLayout.structLayout(
+            ValueLayout.JAVA_LONG.withName("tx_buf"),
+            ValueLayout.JAVA_LONG.withName("rx_buf"),
+            ValueLayout.JAVA_INT.withName("len"),
+            ValueLayout.JAVA_INT.withName("speed_hz"),
+            ValueLayout.JAVA_SHORT.withName("delay_usecs"),
+            ValueLayout.JAVA_BYTE.withName("bits_per_word"),
+            ValueLayout.JAVA_BYTE.withName("cs_change"),
+            ValueLayout.JAVA_BYTE.withName("tx_nbits"),
+            ValueLayout.JAVA_BYTE.withName("rx_nbits"),
+            ValueLayout.JAVA_BYTE.withName("word_delay_usecs"),
+            MemoryLayout.paddingLayout(1)
+    );
+    private static final long TRANSFER_SIZE = SPI_IOC_TRANSFER.byteSize();
+    private static final long TX_BUF = SPI_IOC_TRANSFER.byteOffset(groupElement("tx_buf"));
+    private static final long LEN = SPI_IOC_TRANSFER.byteOffset(groupElement("len"));
+    private static final long SPEED_HZ = SPI_IOC_TRANSFER.byteOffset(groupElement("speed_hz"));
+    private static final long BITS_PER_WORD = SPI_IOC_TRANSFER.byteOffset(groupElement("bits_per_word"));
+    private static final long CS_CHANGE = SPI_IOC_TRANSFER.byteOffset(groupElement("cs_change"));
+
+    /**
+     * Native libc bindings, errno is captured to report failures
+     */
+    private static final Linker linker = Linker.nativeLinker();
+    private static final StructLayout CALL_STATE = Linker.Option.captureStateLayout();
+    private static final long ERRNO = CALL_STATE.byteOffset(groupElement("errno"));
+    private static final MethodHandle libcOpen = linker.downcallHandle(
+            linker.defaultLookup().find("open").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT),
+            Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcIoctl = linker.downcallHandle(
+            linker.defaultLookup().find("ioctl").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            Linker.Option.firstVariadicArg(2), Linker.Option.captureCallState("errno"));
+    private static final MethodHandle libcClose = linker.downcallHandle(
+            linker.defaultLookup().find("close").orElseThrow(),
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+
+    private final Arena arena;
+    private final MemorySegment callState;
+    private final MemorySegment transfers;
+    private final MemorySegment txData;
+    private final int capacity;
+    private final int fd;
+    private int count = 0;
+
+    /**
+     * Opens <code>/dev/spidev[bus].[chipSelect]</code> for batched writes.
+     *
+     * @param bus        SPI bus number
+     * @param chipSelect Chip select line on the bus
+     * @param mode       SPI mode (0-3)
+     * @param speedHz    Clock speed used for every message
+     * @param capacity   Maximum number of queued messages, a full queue is flushed automatically
+     */
+    public SpiMessageBatch(int bus, int chipSelect, int mode, int speedHz, int capacity) {
+        if (capacity < 1 || capacity > MAX_MESSAGES) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_MESSAGES);
+        }
+        this.capacity = capacity;
+        this.arena = Arena.ofShared();
+        this.callState = arena.allocate(CALL_STATE);
+        this.txData = arena.allocate((long) capacity * MESSAGE_LENGTH);
+        this.transfers = arena.allocate(SPI_IOC_TRANSFER, capacity);
+
+        // Every transfer points to its own two bytes, only the content changes when queueing
+        for (int i = 0; i < capacity; i++) {
+            long offset = i * TRANSFER_SIZE;
+            transfers.set(ValueLayout.JAVA_LONG, offset + TX_BUF, txData.address() + (long) i * MESSAGE_LENGTH);
+            transfers.set(ValueLayout.JAVA_INT, offset + LEN, MESSAGE_LENGTH);
+            transfers.set(ValueLayout.JAVA_INT, offset + SPEED_HZ, speedHz);
+            transfers.set(ValueLayout.JAVA_BYTE, offset + BITS_PER_WORD, (byte) 8);
+            transfers.set(ValueLayout.JAVA_BYTE, offset + CS_CHANGE, (byte) 1);
+        }
+
+        String device = "/dev/spidev" + bus + "." + chipSelect;
+        try {
+            this.fd = (int) libcOpen.invokeExact(callState, arena.allocateFrom(device), O_RDWR);
+        } catch (Throwable e) {
+            arena.close();
+            throw new IllegalStateException("Failed to open " + device, e);
+        }
+        if (fd < 0) {
+            int errno = errno();
+            arena.close();
+            throw new IllegalStateException("Failed to open " + device + ", errno " + errno);
+        }
+
+        var modeValue = arena.allocateFrom(ValueLayout.JAVA_BYTE, (byte) mode);
+        if (invokeIoctl(SPI_IOC_WR_MODE, modeValue) < 0) {
+            int errno = errno();
+            close();
+            throw new IllegalStateException("Failed to set SPI mode " + mode + " on " + device + ", errno " + errno);
+        }
+    }
+
+    /**
+     * Queues a two-byte message, e.g. a register address and its value.
+     *
+     * @param first  First byte to be sent
+     * @param second Second byte to be sent
+     */
+    @Override
+    public void queue(byte first, byte second) {
+        if (count == capacity) {
+            flush();
+        }
+        long offset = (long) count * MESSAGE_LENGTH;
+        txData.set(ValueLayout.JAVA_BYTE, offset, first);
+        txData.set(ValueLayout.JAVA_BYTE, offset + 1, second);
+        count++;
+    }
+
+    /**
+     * @return Number of messages waiting to be flushed
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Sends all queued messages in one system call. CS is toggled after every message,
+     * except the last one where the driver releases CS at the end of the request.
+     */
+    @Override
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        long lastCsChange = (count - 1) * TRANSFER_SIZE + CS_CHANGE;
+        int messages = count;
+        transfers.set(ValueLayout.JAVA_BYTE, lastCsChange, (byte) 0);
+        int result = invokeIoctl(messageRequest(messages), transfers);
+        transfers.set(ValueLayout.JAVA_BYTE, lastCsChange, (byte) 1);
+        count = 0;
+        if (result < 0) {
+            throw new IllegalStateException("SPI_IOC_MESSAGE(" + messages + ") failed, errno " + errno());
+        }
+    }
+
+    /**
+     * Closes the device and releases the native memory. Messages still in the queue are discarded.
+     */
+    @Override
+    public void close() {
+        try {
+            if ((int) libcClose.invokeExact(fd) != 0) {
+                System.err.println("Failed to close SPI device");
+            }
+        } catch (Throwable e) {
+            System.err.println("Error while closing SPI device: " + e.getMessage());
+        } finally {
+            arena.close();
+        }
+    }
+
+    /**
+     * <code>SPI_IOC_MESSAGE(n)</code> is <code>_IOW('k', 0, char[n * sizeof(struct spi_ioc_transfer)])</code>
+     */
+    private static long messageRequest(int messages) {
+        return 0x40000000L | ((messages * TRANSFER_SIZE) << 16) | ('k' << 8);
+    }
+
+    private int invokeIoctl(long request, MemorySegment argument) {
+        try {
+            return (int) libcIoctl.invokeExact(callState, fd, request, argument);
+        } catch (Throwable e) {
+            throw new IllegalStateException("ioctl 0x" + Long.toHexString(request) + " failed", e);
+        }
+    }
+
+    private int errno() {
+        return callState.get(ValueLayout.JAVA_INT, ERRNO);
+    }
+}